@@ -0,0 +1,51 @@
+package com.kingcjy.cache.config;
+
+import com.kingcjy.cache.config.offheap.CacheCodec;
+import com.kingcjy.cache.config.offheap.JdkSerializationCodec;
+import com.kingcjy.cache.config.snapshot.CacheSnapshotter;
+import com.kingcjy.cache.config.tier.CacheRefresher;
+import com.kingcjy.cache.config.tier.RedisRemoteCacheStore;
+import com.kingcjy.cache.config.tier.RemoteCacheStore;
+import com.kingcjy.cache.config.tier.TwoTierCacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+@Configuration
+public class CacheConfig {
+
+    @Autowired
+    private CacheProperty cacheProperty;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Bean
+    @ConditionalOnProperty(prefix = "cache.remote", name = "enabled", havingValue = "true")
+    public RemoteCacheStore remoteCacheStore(RedisConnectionFactory redisConnectionFactory) {
+        return new RedisRemoteCacheStore(redisConnectionFactory);
+    }
+
+    @Bean
+    public CacheRefresher cacheRefresher() {
+        return new CacheRefresher(cacheProperty.getRefresh(), meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "cache.snapshot", name = "enabled", havingValue = "true")
+    public CacheSnapshotter cacheSnapshotter() {
+        return new CacheSnapshotter(cacheProperty.getSnapshot());
+    }
+
+    @Bean
+    public CacheManager cacheManager(ObjectProvider<RemoteCacheStore> remoteCacheStore, ObjectProvider<CacheCodec> cacheCodec,
+                                     ObjectProvider<CacheSnapshotter> cacheSnapshotter) {
+        return new TwoTierCacheManager(cacheProperty, remoteCacheStore.getIfAvailable(), cacheRefresher(),
+                cacheCodec.getIfAvailable(JdkSerializationCodec::new), cacheSnapshotter.getIfAvailable());
+    }
+}
@@ -0,0 +1,101 @@
+package com.kingcjy.cache.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties("cache")
+public class CacheProperty {
+    private Spec spec = new Spec(10000L, Duration.ofMinutes(10), null, null, null);
+    private Map<String, Spec> caches = new LinkedHashMap<>();
+    private Remote remote = new Remote();
+    private Refresh refresh = new Refresh();
+    private OffHeap offHeap = new OffHeap();
+    private Snapshot snapshot = new Snapshot();
+
+    /**
+     * Size and expiry of the in-process tier of a single cache. Unset values fall back to {@code cache.spec}.
+     * <p>
+     * With {@code refreshAheadFactor} set, an entry read after that fraction of its time to live is reloaded in the
+     * background while the current value keeps being served. With {@code staleIfError} set, an expired entry is
+     * kept for that much longer and served when reloading it fails.
+     * <p>
+     * With {@code offHeapCapacity} set, the cache keeps its entries serialized in that much direct memory instead,
+     * and neither the size, refresh nor remote settings apply to it.
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Spec {
+        private Long maximumSize;
+        private Duration timeToLive;
+        private Double refreshAheadFactor;
+        private Duration staleIfError;
+        private DataSize offHeapCapacity;
+
+        public Spec merge(Spec defaults) {
+            return new Spec(maximumSize != null ? maximumSize : defaults.getMaximumSize(),
+                    timeToLive != null ? timeToLive : defaults.getTimeToLive(),
+                    refreshAheadFactor != null ? refreshAheadFactor : defaults.getRefreshAheadFactor(),
+                    staleIfError != null ? staleIfError : defaults.getStaleIfError(),
+                    offHeapCapacity != null ? offHeapCapacity : defaults.getOffHeapCapacity());
+        }
+    }
+
+    /**
+     * The shared tier behind every cache. It is usually configured to outlive the in-process tier, which bounds
+     * how long another instance can serve an entry that was evicted or overwritten here.
+     */
+    @Getter
+    @Setter
+    public static class Remote {
+        private boolean enabled = false;
+        private Duration timeToLive = Duration.ofHours(1);
+        private String keyPrefix = "cache:";
+    }
+
+    /**
+     * The pool shared by the background refreshes of all caches. A refresh that finds the queue full is skipped.
+     */
+    @Getter
+    @Setter
+    public static class Refresh {
+        private int poolSize = 4;
+        private int queueCapacity = 1000;
+    }
+
+    /**
+     * Layout of the off-heap caches. Each cache is split into independently locked segments, and memory is taken
+     * and evicted a page at a time; an entry larger than a page is not cached.
+     */
+    @Getter
+    @Setter
+    public static class OffHeap {
+        private DataSize pageSize = DataSize.ofMegabytes(1);
+        private int segments = 16;
+    }
+
+    /**
+     * Snapshots of every cache written to {@code directory}, one file per cache, every {@code interval} and on
+     * shutdown. A cache created while its file exists serves the entries in it that have not expired yet.
+     */
+    @Getter
+    @Setter
+    public static class Snapshot {
+        private boolean enabled = false;
+        private String directory = "snapshots";
+        private Duration interval = Duration.ofMinutes(1);
+    }
+}
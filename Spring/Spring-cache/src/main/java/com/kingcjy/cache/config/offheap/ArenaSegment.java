@@ -0,0 +1,373 @@
+package com.kingcjy.cache.config.offheap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * One independently locked part of an {@link OffHeapStore}: a ring of direct pages written like a log, and an open
+ * addressing hash index of the live entries, itself kept in a direct buffer.
+ * <p>
+ * Entry layout, 8 byte aligned: length (int), hash (int), key length (int), value length (int, -1 for a cached
+ * null), expiry (long, 0 for none), key bytes, value bytes.
+ * <p>
+ * Writes append at the head. When the head moves on to a page that was written before, every entry still indexed
+ * in that page is evicted, so eviction is FIFO by write time, a page at a time. Overwritten and removed entries stay
+ * in their page as garbage until the page is reused. An index slot packs a 16 bit hash tag, the page and the offset
+ * of its entry into one long, so most probes are decided without touching the page.
+ */
+class ArenaSegment {
+
+    static final int HEADER_SIZE = 24;
+
+    private static final long EMPTY = 0;
+    private static final long TOMBSTONE = -1;
+    private static final int MIN_INDEX_CAPACITY = 1024;
+    private static final int VISIT_BATCH_BYTES = 1024 * 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int pageSize;
+    private final ByteBuffer[] pages;
+    private final int[] pageLimits;
+    private int headPage;
+    private int headOffset;
+
+    private LongBuffer index;
+    private int mask;
+    private int size;
+    private int tombstones;
+    private long evictions;
+
+    ArenaSegment(int pageSize, int pageCount) {
+        this.pageSize = pageSize;
+        this.pages = new ByteBuffer[pageCount];
+        this.pageLimits = new int[pageCount];
+        resetIndex(MIN_INDEX_CAPACITY);
+    }
+
+    /**
+     * @return the value, {@link OffHeapStore#NULL_VALUE} for a cached null, or {@code null} when absent or expired
+     */
+    byte[] get(byte[] key, int hash, long now) {
+        lock.readLock().lock();
+        try {
+            int slot = find(key, hash);
+            if(slot < 0) {
+                return null;
+            }
+            long address = index.get(slot);
+            ByteBuffer page = pages[page(address)];
+            int offset = offset(address);
+            long expiresAt = page.getLong(offset + 16);
+            if(expiresAt != 0 && expiresAt - now <= 0) {
+                return null;
+            }
+            int valueLength = page.getInt(offset + 12);
+            if(valueLength < 0) {
+                return OffHeapStore.NULL_VALUE;
+            }
+            byte[] value = new byte[valueLength];
+            ByteBuffer view = page.duplicate();
+            view.position(offset + HEADER_SIZE + key.length);
+            view.get(value);
+            return value;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param value {@code null} to cache a null value
+     * @return {@code false} when the entry does not fit in a page
+     */
+    boolean put(byte[] key, int hash, byte[] value, long expiresAt) {
+        int length = align(HEADER_SIZE + key.length + (value == null ? 0 : value.length));
+        if(length > pageSize) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            if(pages[headPage] == null) {
+                pages[headPage] = ByteBuffer.allocateDirect(pageSize);
+            } else if(headOffset + length > pageSize) {
+                advance();
+            }
+            ByteBuffer page = pages[headPage];
+            int offset = headOffset;
+            page.putInt(offset, length);
+            page.putInt(offset + 4, hash);
+            page.putInt(offset + 8, key.length);
+            page.putInt(offset + 12, value == null ? -1 : value.length);
+            page.putLong(offset + 16, expiresAt);
+            ByteBuffer view = page.duplicate();
+            view.position(offset + HEADER_SIZE);
+            view.put(key);
+            if(value != null) {
+                view.put(value);
+            }
+            headOffset += length;
+            pageLimits[headPage] = headOffset;
+
+            long address = address(hash, headPage, offset);
+            int slot = find(key, hash);
+            if(slot >= 0) {
+                index.put(slot, address);
+            } else {
+                insert(hash, address);
+                size++;
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(byte[] key, int hash) {
+        lock.writeLock().lock();
+        try {
+            int slot = find(key, hash);
+            if(slot >= 0) {
+                index.put(slot, TOMBSTONE);
+                size--;
+                tombstones++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            resetIndex(MIN_INDEX_CAPACITY);
+            size = 0;
+            Arrays.fill(pageLimits, 0);
+            headPage = 0;
+            headOffset = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Copies the live entries out under the read lock about {@link #VISIT_BATCH_BYTES} at a time and visits each
+     * batch after releasing it, so writers of this segment only wait for the copying. Entries written, or moved by
+     * an index resize, while the visit is in progress may be missed or visited twice.
+     */
+    void forEach(long now, OffHeapStore.EntryVisitor visitor) throws IOException {
+        List<VisitedEntry> batch = new ArrayList<>();
+        int slot = 0;
+        boolean done = false;
+        while (!done) {
+            lock.readLock().lock();
+            try {
+                long bytes = 0;
+                for(; slot <= mask && bytes < VISIT_BATCH_BYTES; slot++) {
+                    long address = index.get(slot);
+                    if(address == EMPTY || address == TOMBSTONE) {
+                        continue;
+                    }
+                    ByteBuffer page = pages[page(address)];
+                    int offset = offset(address);
+                    long expiresAt = page.getLong(offset + 16);
+                    if(expiresAt != 0 && expiresAt - now <= 0) {
+                        continue;
+                    }
+                    int keyLength = page.getInt(offset + 8);
+                    int valueLength = page.getInt(offset + 12);
+                    byte[] key = new byte[keyLength];
+                    byte[] value = valueLength < 0 ? OffHeapStore.NULL_VALUE : new byte[valueLength];
+                    ByteBuffer view = page.duplicate();
+                    view.position(offset + HEADER_SIZE);
+                    view.get(key);
+                    view.get(value);
+                    batch.add(new VisitedEntry(key, value, expiresAt == 0 ? 0 : expiresAt - now));
+                    bytes += HEADER_SIZE + keyLength + value.length;
+                }
+                done = slot > mask;
+            } finally {
+                lock.readLock().unlock();
+            }
+            for(VisitedEntry entry : batch) {
+                visitor.visit(entry.key, entry.value, entry.timeToLive);
+            }
+            batch.clear();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long evictions() {
+        lock.readLock().lock();
+        try {
+            return evictions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long allocatedBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = (long) (mask + 1) * Long.BYTES;
+            for(ByteBuffer page : pages) {
+                if(page != null) {
+                    bytes += pageSize;
+                }
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void advance() {
+        headPage = (headPage + 1) % pages.length;
+        headOffset = 0;
+        if(pages[headPage] == null) {
+            pages[headPage] = ByteBuffer.allocateDirect(pageSize);
+        } else {
+            evictPage(headPage);
+        }
+    }
+
+    private void evictPage(int pageIndex) {
+        ByteBuffer page = pages[pageIndex];
+        int limit = pageLimits[pageIndex];
+        for(int offset = 0; offset < limit; offset += page.getInt(offset)) {
+            int hash = page.getInt(offset + 4);
+            int slot = findAddress(hash, address(hash, pageIndex, offset));
+            if(slot >= 0) {
+                index.put(slot, TOMBSTONE);
+                size--;
+                tombstones++;
+                evictions++;
+            }
+        }
+        pageLimits[pageIndex] = 0;
+    }
+
+    private int find(byte[] key, int hash) {
+        long tag = tag(hash);
+        for(int slot = hash & mask, probes = 0; probes <= mask; slot = (slot + 1) & mask, probes++) {
+            long entry = index.get(slot);
+            if(entry == EMPTY) {
+                return -1;
+            }
+            if(entry != TOMBSTONE && (entry >>> 48) == tag && keyEquals(entry, key)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int findAddress(int hash, long address) {
+        for(int slot = hash & mask, probes = 0; probes <= mask; slot = (slot + 1) & mask, probes++) {
+            long entry = index.get(slot);
+            if(entry == EMPTY) {
+                return -1;
+            }
+            if(entry == address) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(int hash, long address) {
+        int capacity = mask + 1;
+        if((size + tombstones + 1) * 4L > capacity * 3L) {
+            resize(size + 1 > capacity / 2 ? capacity * 2 : capacity);
+        }
+        place(hash, address);
+    }
+
+    private void place(int hash, long address) {
+        for(int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            long entry = index.get(slot);
+            if(entry == EMPTY || entry == TOMBSTONE) {
+                if(entry == TOMBSTONE) {
+                    tombstones--;
+                }
+                index.put(slot, address);
+                return;
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        LongBuffer old = index;
+        resetIndex(capacity);
+        for(int i = 0; i < old.capacity(); i++) {
+            long entry = old.get(i);
+            if(entry != EMPTY && entry != TOMBSTONE) {
+                place(pages[page(entry)].getInt(offset(entry) + 4), entry);
+            }
+        }
+    }
+
+    private void resetIndex(int capacity) {
+        index = ByteBuffer.allocateDirect(capacity * Long.BYTES).asLongBuffer();
+        mask = capacity - 1;
+        tombstones = 0;
+    }
+
+    private boolean keyEquals(long address, byte[] key) {
+        ByteBuffer page = pages[page(address)];
+        int offset = offset(address);
+        if(page.getInt(offset + 8) != key.length) {
+            return false;
+        }
+        int keyOffset = offset + HEADER_SIZE;
+        for(int i = 0; i < key.length; i++) {
+            if(page.get(keyOffset + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long tag(int hash) {
+        // never zero, so an occupied slot can not be mistaken for an empty one
+        return (hash >>> 16) | 1;
+    }
+
+    private static long address(int hash, int page, int offset) {
+        return tag(hash) << 48 | (long) page << 32 | offset;
+    }
+
+    private static int page(long address) {
+        return (int) (address >>> 32) & 0xFFFF;
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static int align(int length) {
+        return (length + 7) & ~7;
+    }
+
+    private static class VisitedEntry {
+        private final byte[] key;
+        private final byte[] value;
+        private final long timeToLive;
+
+        private VisitedEntry(byte[] key, byte[] value, long timeToLive) {
+            this.key = key;
+            this.value = value;
+            this.timeToLive = timeToLive;
+        }
+    }
+}
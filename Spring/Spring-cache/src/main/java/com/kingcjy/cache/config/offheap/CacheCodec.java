@@ -0,0 +1,11 @@
+package com.kingcjy.cache.config.offheap;
+
+/**
+ * Turns cached values into the bytes kept off-heap and back. {@code null} values never reach a codec.
+ */
+public interface CacheCodec {
+
+    byte[] encode(Object value);
+
+    Object decode(byte[] bytes);
+}
@@ -0,0 +1,23 @@
+package com.kingcjy.cache.config.offheap;
+
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+
+/**
+ * Default codec, works for any {@link java.io.Serializable} value at the cost of a class descriptor per entry.
+ */
+public class JdkSerializationCodec implements CacheCodec {
+
+    private final SerializingConverter serializer = new SerializingConverter();
+    private final DeserializingConverter deserializer = new DeserializingConverter();
+
+    @Override
+    public byte[] encode(Object value) {
+        return serializer.convert(value);
+    }
+
+    @Override
+    public Object decode(byte[] bytes) {
+        return deserializer.convert(bytes);
+    }
+}
@@ -0,0 +1,222 @@
+package com.kingcjy.cache.config.offheap;
+
+import com.kingcjy.cache.config.snapshot.CacheSnapshot;
+import com.kingcjy.cache.config.snapshot.CacheSnapshotWriter;
+import com.kingcjy.cache.config.snapshot.SnapshotCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.cache.support.NullValue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link org.springframework.cache.Cache} on an {@link OffHeapStore}. Values are encoded with a {@link CacheCodec}
+ * on every write and decoded on every read, so callers always get a copy. Keys are stored as the UTF-8 bytes of
+ * their string form, like in the remote tier of {@link com.kingcjy.cache.config.tier.TwoTierCache}.
+ * {@link #get(Object, Callable)} loads single-flight per key; a load that finishes after the key was evicted or the
+ * cache cleared answers its callers without caching what it loaded.
+ * <p>
+ * Snapshots hold the encoded bytes as they are, so restoring an entry does not decode it.
+ */
+@Slf4j
+public class OffHeapCache extends AbstractValueAdaptingCache implements SnapshotCache {
+
+    private final String name;
+    private final OffHeapStore store;
+    private final CacheCodec codec;
+    private final Duration timeToLive;
+    private final ConcurrentMap<Object, Load> loading = new ConcurrentHashMap<>();
+    private volatile CacheSnapshot snapshot;
+
+    public OffHeapCache(String name, OffHeapStore store, CacheCodec codec, Duration timeToLive) {
+        super(true);
+        this.name = name;
+        this.store = store;
+        this.codec = codec;
+        this.timeToLive = timeToLive;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public OffHeapStore getNativeCache() {
+        return store;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        byte[] bytes = store.get(keyBytes(key));
+        if(bytes == null) {
+            bytes = snapshotLookup(key);
+        }
+        if(bytes == null) {
+            return null;
+        }
+        return bytes == OffHeapStore.NULL_VALUE ? NullValue.INSTANCE : codec.decode(bytes);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object value = lookup(key);
+        if(value != null) {
+            return (T) fromStoreValue(value);
+        }
+
+        Load load = new Load();
+        Load inFlight = loading.putIfAbsent(key, load);
+        if(inFlight != null) {
+            return (T) fromStoreValue(await(key, inFlight));
+        }
+        try {
+            value = lookup(key);
+            if(value == null) {
+                try {
+                    value = toStoreValue(valueLoader.call());
+                } catch (Exception e) {
+                    throw new ValueRetrievalException(key, valueLoader, e);
+                }
+                if(!load.evicted) {
+                    write(key, value);
+                    // an evict racing with the write wins
+                    if(load.evicted) {
+                        store.remove(keyBytes(key));
+                    }
+                }
+            }
+            load.complete(value);
+            return (T) fromStoreValue(value);
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        write(key, toStoreValue(value));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        Object existing = lookup(key);
+        if(existing == null) {
+            write(key, toStoreValue(value));
+        }
+        return toValueWrapper(existing);
+    }
+
+    @Override
+    public void evict(Object key) {
+        Load load = loading.get(key);
+        if(load != null) {
+            load.evicted = true;
+        }
+        store.remove(keyBytes(key));
+        discardSnapshot(key);
+    }
+
+    @Override
+    public void clear() {
+        loading.values().forEach(load -> load.evicted = true);
+        snapshot = null;
+        store.clear();
+    }
+
+    @Override
+    public void restoreFrom(CacheSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    @Override
+    public void writeSnapshot(CacheSnapshotWriter writer) throws IOException {
+        CacheSnapshot snapshot = this.snapshot;
+        if(snapshot != null) {
+            // written first, so an entry that is also in the store by now is read back with its stored value
+            snapshot.writeTo(writer);
+        }
+        long now = System.currentTimeMillis();
+        store.forEach((key, value, remaining) -> writer.write(key, value == OffHeapStore.NULL_VALUE ? null : value,
+                remaining == 0 ? 0 : now + TimeUnit.NANOSECONDS.toMillis(remaining)));
+    }
+
+    /**
+     * Moves the snapshot entry of {@code key}, if any, into the store.
+     *
+     * @return its bytes as {@link OffHeapStore#get(byte[])} returns them
+     */
+    private byte[] snapshotLookup(Object key) {
+        CacheSnapshot snapshot = this.snapshot;
+        if(snapshot == null) {
+            return null;
+        }
+        if(snapshot.isExhausted()) {
+            this.snapshot = null;
+            return null;
+        }
+        CacheSnapshot.Entry entry = snapshot.take(String.valueOf(key));
+        if(entry == null) {
+            return null;
+        }
+        Duration remaining = entry.getTimeToLive();
+        if(timeToLive != null && (remaining == null || remaining.compareTo(timeToLive) > 0)) {
+            remaining = timeToLive;
+        }
+        store.put(keyBytes(key), entry.getValue(), remaining);
+        return entry.getValue() != null ? entry.getValue() : OffHeapStore.NULL_VALUE;
+    }
+
+    private void write(Object key, Object storeValue) {
+        byte[] bytes = storeValue == NullValue.INSTANCE ? null : codec.encode(storeValue);
+        if(!store.put(keyBytes(key), bytes, timeToLive)) {
+            log.debug("{} in {} is larger than a page and is not cached", key, name);
+        }
+        discardSnapshot(key);
+    }
+
+    private void discardSnapshot(Object key) {
+        CacheSnapshot snapshot = this.snapshot;
+        if(snapshot != null) {
+            snapshot.discard(String.valueOf(key));
+        }
+    }
+
+    private Object await(Object key, CompletableFuture<Object> inFlight) {
+        try {
+            return inFlight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for " + key + " in " + name, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static byte[] keyBytes(Object key) {
+        return String.valueOf(key).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static class Load extends CompletableFuture<Object> {
+        private volatile boolean evicted;
+    }
+}
@@ -0,0 +1,153 @@
+package com.kingcjy.cache.config.offheap;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Byte keyed store that keeps keys, values and its hash index in direct memory, so the heap only holds a few objects
+ * per segment however much is cached. Memory is taken a page at a time up to the capacity and then reused; it is
+ * bounded by {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap size.
+ */
+public class OffHeapStore {
+
+    /**
+     * Returned by {@link #get(byte[])} for a key whose cached value is null.
+     */
+    public static final byte[] NULL_VALUE = new byte[0];
+
+    private static final int MAX_PAGE_SIZE = 1 << 30;
+    private static final int MAX_PAGES_PER_SEGMENT = 0xFFFF;
+
+    private final ArenaSegment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public OffHeapStore(long capacity, int pageSize, int segmentCount) {
+        if(pageSize < ArenaSegment.HEADER_SIZE || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("page size must be between " + ArenaSegment.HEADER_SIZE + " and " + MAX_PAGE_SIZE);
+        }
+        long pagesPerSegment = Math.max(1, capacity / segmentCount / pageSize);
+        if(pagesPerSegment > MAX_PAGES_PER_SEGMENT) {
+            throw new IllegalArgumentException("capacity " + capacity + " needs more than " + MAX_PAGES_PER_SEGMENT
+                    + " pages per segment, use a larger page size or more segments");
+        }
+        segments = new ArenaSegment[segmentCount];
+        for(int i = 0; i < segmentCount; i++) {
+            segments[i] = new ArenaSegment(pageSize, (int) pagesPerSegment);
+        }
+    }
+
+    /**
+     * @return the value, {@link #NULL_VALUE} for a cached null, or {@code null} when absent or expired
+     */
+    public byte[] get(byte[] key) {
+        int hash = hash(key);
+        byte[] value = segment(hash).get(key, hash, System.nanoTime());
+        if(value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * @param value {@code null} to cache a null value
+     * @param timeToLive {@code null} to keep the entry until it is evicted
+     * @return {@code false} when the entry is larger than a page and was not stored
+     */
+    public boolean put(byte[] key, byte[] value, Duration timeToLive) {
+        int hash = hash(key);
+        long expiresAt = 0;
+        if(timeToLive != null) {
+            expiresAt = System.nanoTime() + timeToLive.toNanos();
+            if(expiresAt == 0) {
+                expiresAt = 1;
+            }
+        }
+        return segment(hash).put(key, hash, value, expiresAt);
+    }
+
+    public void remove(byte[] key) {
+        int hash = hash(key);
+        segment(hash).remove(key, hash);
+    }
+
+    /**
+     * Visits every entry that has not expired, one segment at a time. Entries are copied out in batches and visited
+     * outside the segment lock, so writes only wait for the copying, and an entry written during the visit may be
+     * missed or visited twice.
+     */
+    public void forEach(EntryVisitor visitor) throws IOException {
+        for(ArenaSegment segment : segments) {
+            segment.forEach(System.nanoTime(), visitor);
+        }
+    }
+
+    public void clear() {
+        for(ArenaSegment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * @return indexed entries, including expired ones that have not been overwritten or evicted yet
+     */
+    public long size() {
+        long size = 0;
+        for(ArenaSegment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public long getAllocatedBytes() {
+        long bytes = 0;
+        for(ArenaSegment segment : segments) {
+            bytes += segment.allocatedBytes();
+        }
+        return bytes;
+    }
+
+    public long getEvictionCount() {
+        long evictions = 0;
+        for(ArenaSegment segment : segments) {
+            evictions += segment.evictions();
+        }
+        return evictions;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private ArenaSegment segment(int hash) {
+        return segments[(hash >>> 16) % segments.length];
+    }
+
+    private static int hash(byte[] key) {
+        // murmur3 finalizer, spreads the weak low bits of Arrays.hashCode over the whole int
+        int h = Arrays.hashCode(key);
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    public interface EntryVisitor {
+
+        /**
+         * @param value {@link #NULL_VALUE} for a cached null
+         * @param timeToLive nanoseconds the entry has left, 0 when it does not expire
+         */
+        void visit(byte[] key, byte[] value, long timeToLive) throws IOException;
+    }
+}
@@ -0,0 +1,19 @@
+package com.kingcjy.cache.config.offheap;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Stores {@link String} values as plain UTF-8, for caches of rendered or pre-serialized content.
+ */
+public class StringCodec implements CacheCodec {
+
+    @Override
+    public byte[] encode(Object value) {
+        return ((String) value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Object decode(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
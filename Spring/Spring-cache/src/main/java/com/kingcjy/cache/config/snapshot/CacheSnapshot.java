@@ -0,0 +1,220 @@
+package com.kingcjy.cache.config.snapshot;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A snapshot file mapped read-only. Opening it only reads the entry headers and keys to index them; values stay in
+ * the mapping, which the OS pages in on demand, until a cache {@link #take takes} them on its first miss for the key.
+ * A file larger than one mapping can address is mapped in consecutive regions, each starting at an entry, so no
+ * entry spans two of them.
+ * <p>
+ * File layout: magic (int), version (int), then per entry key length (int), value length (int, -1 for a cached
+ * null), expiry in epoch milliseconds (long, 0 for none), key bytes and value bytes. Expiries are wall clock times,
+ * so they carry over a restart. Keys are the UTF-8 bytes of the string form of the cache key.
+ */
+@Slf4j
+public class CacheSnapshot {
+
+    static final int MAGIC = 0x43534E50;
+    static final int VERSION = 1;
+    static final int ENTRY_HEADER_SIZE = 16;
+    static final int MAX_REGION_SIZE = Integer.MAX_VALUE;
+
+    private final List<ByteBuffer> regions = new ArrayList<>();
+    /**
+     * Entry addresses: region in the high, offset in the low 32 bits.
+     */
+    private final Map<String, Long> index = new ConcurrentHashMap<>();
+    private final long lastExpiry;
+
+    private CacheSnapshot(FileChannel channel, ByteBuffer firstRegion, int regionSize, long nowMillis) throws IOException {
+        regions.add(firstRegion);
+        this.lastExpiry = scan(channel, regionSize, nowMillis);
+    }
+
+    /**
+     * Maps and indexes {@code file}. Entries already expired at this point are skipped.
+     */
+    public static CacheSnapshot open(Path file) throws IOException {
+        return open(file, MAX_REGION_SIZE);
+    }
+
+    static CacheSnapshot open(Path file, int regionSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mappings stay valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), regionSize));
+            if(buffer.limit() < 8 || buffer.getInt(0) != MAGIC) {
+                throw new IOException(file + " is not a cache snapshot");
+            }
+            if(buffer.getInt(4) != VERSION) {
+                throw new IOException(file + " has unsupported snapshot version " + buffer.getInt(4));
+            }
+            return new CacheSnapshot(channel, buffer, regionSize, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Removes the entry of {@code key}, so it is handed out at most once.
+     *
+     * @return the entry, or {@code null} when the snapshot has none or it expired
+     */
+    public Entry take(String key) {
+        Long address = index.remove(key);
+        if(address == null) {
+            return null;
+        }
+        long expiresAt = region(address).getLong(offset(address) + 8);
+        Duration timeToLive = null;
+        if(expiresAt != 0) {
+            long remaining = expiresAt - System.currentTimeMillis();
+            if(remaining <= 0) {
+                return null;
+            }
+            timeToLive = Duration.ofMillis(remaining);
+        }
+        return new Entry(value(address), timeToLive);
+    }
+
+    /**
+     * Drops the entry of {@code key}, after it was written or evicted in the cache.
+     */
+    public void discard(String key) {
+        index.remove(key);
+    }
+
+    /**
+     * Copies the entries that were not taken yet and have not expired, so a snapshot written before they are used
+     * keeps them.
+     */
+    public void writeTo(CacheSnapshotWriter writer) throws IOException {
+        long now = System.currentTimeMillis();
+        for(Map.Entry<String, Long> indexed : index.entrySet()) {
+            long address = indexed.getValue();
+            long expiresAt = region(address).getLong(offset(address) + 8);
+            if(expiresAt == 0 || expiresAt > now) {
+                writer.write(indexed.getKey().getBytes(StandardCharsets.UTF_8), value(address), expiresAt);
+            }
+        }
+    }
+
+    /**
+     * @return entries not taken yet, including ones that expired since the snapshot was opened
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * @return {@code true} once no entry is left to take, so the cache can let go of the mapping
+     */
+    public boolean isExhausted() {
+        return index.isEmpty() || (lastExpiry != 0 && lastExpiry <= System.currentTimeMillis());
+    }
+
+    private byte[] value(long address) {
+        ByteBuffer region = region(address);
+        int offset = offset(address);
+        int valueLength = region.getInt(offset + 4);
+        if(valueLength < 0) {
+            return null;
+        }
+        byte[] value = new byte[valueLength];
+        ByteBuffer view = region.duplicate();
+        view.position(offset + ENTRY_HEADER_SIZE + region.getInt(offset));
+        view.get(value);
+        return value;
+    }
+
+    private ByteBuffer region(long address) {
+        return regions.get((int) (address >>> 32));
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    /**
+     * Indexes the entries, mapping a new region from the first entry that does not fit in the current one.
+     *
+     * @return the latest expiry of the indexed entries, 0 when one of them never expires
+     */
+    private long scan(FileChannel channel, int regionSize, long nowMillis) throws IOException {
+        long size = channel.size();
+        long lastExpiry = Long.MIN_VALUE;
+        ByteBuffer region = regions.get(0);
+        long regionStart = 0;
+        long position = 8;
+        while (position < size) {
+            if(size - position < ENTRY_HEADER_SIZE) {
+                log.warn("snapshot ends in a truncated entry at {}, ignoring the rest", position);
+                break;
+            }
+            if(position + ENTRY_HEADER_SIZE > regionStart + region.limit()) {
+                region = map(channel, position, size, regionSize);
+                regionStart = position;
+            }
+            int offset = (int) (position - regionStart);
+            int keyLength = region.getInt(offset);
+            int valueLength = region.getInt(offset + 4);
+            long length = (long) ENTRY_HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+            if(keyLength < 0 || position + length > size) {
+                log.warn("snapshot ends in a truncated entry at {}, ignoring the rest", position);
+                break;
+            }
+            if(length > regionSize) {
+                log.warn("snapshot entry at {} is larger than a mapping, ignoring the rest", position);
+                break;
+            }
+            if(position + length > regionStart + region.limit()) {
+                region = map(channel, position, size, regionSize);
+                regionStart = position;
+                offset = 0;
+            }
+            long expiresAt = region.getLong(offset + 8);
+            if(expiresAt == 0 || expiresAt > nowMillis) {
+                byte[] key = new byte[keyLength];
+                ByteBuffer view = region.duplicate();
+                view.position(offset + ENTRY_HEADER_SIZE);
+                view.get(key);
+                index.put(new String(key, StandardCharsets.UTF_8), (long) (regions.size() - 1) << 32 | offset);
+                lastExpiry = expiresAt == 0 || lastExpiry == 0 ? 0 : Math.max(lastExpiry, expiresAt);
+            }
+            position += length;
+        }
+        return lastExpiry == Long.MIN_VALUE ? nowMillis : lastExpiry;
+    }
+
+    private ByteBuffer map(FileChannel channel, long position, long size, int regionSize) throws IOException {
+        ByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, regionSize));
+        regions.add(region);
+        return region;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+        /**
+         * {@code null} for a cached null value
+         */
+        private final byte[] value;
+        /**
+         * What is left of the entry's time to live, {@code null} when it does not expire
+         */
+        private final Duration timeToLive;
+    }
+}
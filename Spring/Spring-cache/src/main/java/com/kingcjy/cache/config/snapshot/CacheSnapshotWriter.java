@@ -0,0 +1,82 @@
+package com.kingcjy.cache.config.snapshot;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes a snapshot to a temporary file next to its target, which {@link #commit()} moves into place atomically.
+ * A node that dies while writing keeps its previous snapshot, and a {@link CacheSnapshot} mapping the previous file
+ * stays readable after it is replaced.
+ * <p>
+ * The file may grow past 2 GB, which {@link CacheSnapshot} maps in several regions; only an entry too large for a
+ * region of its own is dropped.
+ */
+@Slf4j
+public class CacheSnapshotWriter implements Closeable {
+
+    private final Path target;
+    private final Path temporary;
+    private final DataOutputStream output;
+    private long entries;
+    private long dropped;
+    private boolean committed;
+
+    public CacheSnapshotWriter(Path target) throws IOException {
+        this.target = target;
+        this.temporary = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+        this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 64 * 1024));
+        output.writeInt(CacheSnapshot.MAGIC);
+        output.writeInt(CacheSnapshot.VERSION);
+    }
+
+    /**
+     * @param value {@code null} for a cached null value
+     * @param expiresAt wall clock expiry in epoch milliseconds, 0 for none
+     */
+    public void write(byte[] key, byte[] value, long expiresAt) throws IOException {
+        long length = (long) CacheSnapshot.ENTRY_HEADER_SIZE + key.length + (value == null ? 0 : value.length);
+        if(length > CacheSnapshot.MAX_REGION_SIZE) {
+            dropped++;
+            return;
+        }
+        output.writeInt(key.length);
+        output.writeInt(value == null ? -1 : value.length);
+        output.writeLong(expiresAt);
+        output.write(key);
+        if(value != null) {
+            output.write(value);
+        }
+        entries++;
+    }
+
+    /**
+     * @return entries written so far
+     */
+    public long getEntries() {
+        return entries;
+    }
+
+    public void commit() throws IOException {
+        output.close();
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        committed = true;
+        if(dropped > 0) {
+            log.warn("{} entries were too large for snapshot {} and were left out", dropped, target);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(!committed) {
+            output.close();
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
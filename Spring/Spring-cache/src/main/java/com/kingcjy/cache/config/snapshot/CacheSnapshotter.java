@@ -0,0 +1,96 @@
+package com.kingcjy.cache.config.snapshot;
+
+import com.kingcjy.cache.config.CacheProperty;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cache.Cache;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves every registered {@link SnapshotCache} to {@code <directory>/<cache name>.snapshot} on a fixed delay and
+ * once more when the context shuts down, and restores each cache from its file when it is registered. A missing or
+ * unreadable snapshot only means the cache starts empty.
+ */
+@Slf4j
+public class CacheSnapshotter implements DisposableBean {
+
+    private static final String SUFFIX = ".snapshot";
+
+    private final Path directory;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<String, SnapshotCache> caches = new ConcurrentHashMap<>();
+
+    public CacheSnapshotter(CacheProperty.Snapshot snapshot) {
+        this.directory = Paths.get(snapshot.getDirectory());
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("cache-snapshot-");
+        threadFactory.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long interval = snapshot.getInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::snapshotAll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Restores {@code cache} from its snapshot, if there is one, and includes it in the following snapshots.
+     * Caches that do not implement {@link SnapshotCache} are ignored.
+     */
+    public void register(Cache cache) {
+        if(!(cache instanceof SnapshotCache)) {
+            return;
+        }
+        SnapshotCache snapshotCache = (SnapshotCache) cache;
+        caches.put(cache.getName(), snapshotCache);
+
+        Path file = file(cache.getName());
+        if(!Files.exists(file)) {
+            return;
+        }
+        try {
+            CacheSnapshot snapshot = CacheSnapshot.open(file);
+            snapshotCache.restoreFrom(snapshot);
+            log.info("restoring {} entries of {} from {}", snapshot.size(), cache.getName(), file);
+        } catch (IOException | RuntimeException e) {
+            log.warn("ignoring snapshot {}, {} starts empty", file, cache.getName(), e);
+        }
+    }
+
+    public void snapshotAll() {
+        caches.values().forEach(this::snapshot);
+    }
+
+    private void snapshot(SnapshotCache cache) {
+        long start = System.nanoTime();
+        Path file = file(cache.getName());
+        try {
+            Files.createDirectories(directory);
+            try (CacheSnapshotWriter writer = new CacheSnapshotWriter(file)) {
+                cache.writeSnapshot(writer);
+                writer.commit();
+                log.debug("wrote {} entries of {} to {} in {} ms", writer.getEntries(), cache.getName(), file,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("snapshot of {} failed", cache.getName(), e);
+        }
+    }
+
+    private Path file(String cacheName) {
+        return directory.resolve(cacheName + SUFFIX);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        snapshotAll();
+    }
+}
@@ -0,0 +1,22 @@
+package com.kingcjy.cache.config.snapshot;
+
+import java.io.IOException;
+
+/**
+ * A cache whose contents the {@link CacheSnapshotter} can save and bring back after a restart.
+ */
+public interface SnapshotCache {
+
+    String getName();
+
+    /**
+     * Writes every live entry, with what is left of its time to live.
+     */
+    void writeSnapshot(CacheSnapshotWriter writer) throws IOException;
+
+    /**
+     * Serves the entries of {@code snapshot} from now on, each moved into the cache on its first miss. Entries the
+     * cache writes or evicts meanwhile take precedence over the snapshot.
+     */
+    void restoreFrom(CacheSnapshot snapshot);
+}
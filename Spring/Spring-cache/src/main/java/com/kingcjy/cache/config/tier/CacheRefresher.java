@@ -0,0 +1,84 @@
+package com.kingcjy.cache.config.tier;
+
+import com.kingcjy.cache.config.CacheProperty;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the background refreshes of every {@link TwoTierCache} on one bounded pool. When the queue is full the
+ * refresh is skipped; the entry keeps being served until it expires and is then loaded by the request that finds it.
+ * <p>
+ * Publishes the pool as {@code cache.refresh} executor metrics, refresh outcomes as {@code cache.refresh.result}
+ * (success, failure, rejected) and stale values served after a failed load as {@code cache.stale.served},
+ * tagged with the cache name.
+ */
+@Slf4j
+public class CacheRefresher implements DisposableBean {
+
+    private final ThreadPoolExecutor threadPoolExecutor;
+    private final ExecutorService executor;
+    private final MeterRegistry meterRegistry;
+
+    public CacheRefresher(CacheProperty.Refresh refresh, MeterRegistry meterRegistry) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("cache-refresh-");
+        threadFactory.setDaemon(true);
+        this.threadPoolExecutor = new ThreadPoolExecutor(refresh.getPoolSize(), refresh.getPoolSize(),
+                0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(refresh.getQueueCapacity()), threadFactory);
+        this.executor = meterRegistry != null
+                ? ExecutorServiceMetrics.monitor(meterRegistry, threadPoolExecutor, "cache.refresh", Collections.emptyList())
+                : threadPoolExecutor;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @return {@code false} when the pool is saturated and {@code refresh} will not run
+     */
+    boolean submit(String cacheName, Object key, Runnable refresh) {
+        try {
+            executor.execute(() -> {
+                try {
+                    refresh.run();
+                    count("cache.refresh.result", cacheName, "success");
+                } catch (RuntimeException e) {
+                    count("cache.refresh.result", cacheName, "failure");
+                    log.warn("refresh of {} in {} failed", key, cacheName, e);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            count("cache.refresh.result", cacheName, "rejected");
+            return false;
+        }
+    }
+
+    void staleServed(String cacheName) {
+        count("cache.stale.served", cacheName, null);
+    }
+
+    private void count(String name, String cacheName, String result) {
+        if(meterRegistry == null) {
+            return;
+        }
+        Counter.Builder builder = Counter.builder(name).tag("cache", cacheName);
+        if(result != null) {
+            builder.tag("result", result);
+        }
+        builder.register(meterRegistry).increment();
+    }
+
+    @Override
+    public void destroy() {
+        threadPoolExecutor.shutdownNow();
+    }
+}
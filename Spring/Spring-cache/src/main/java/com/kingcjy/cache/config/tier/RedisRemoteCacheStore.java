@@ -0,0 +1,72 @@
+package com.kingcjy.cache.config.tier;
+
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link RemoteCacheStore} on any server speaking the Redis protocol.
+ * Clearing walks the key space with {@code SCAN} so that it never blocks the server the way {@code KEYS} does.
+ */
+public class RedisRemoteCacheStore implements RemoteCacheStore {
+
+    private static final int SCAN_BATCH_SIZE = 1000;
+
+    private final RedisTemplate<String, byte[]> redisTemplate;
+
+    public RedisRemoteCacheStore(RedisConnectionFactory connectionFactory) {
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        // values are already serialized, without a value serializer they are written and read as raw bytes
+        redisTemplate.setEnableDefaultSerializer(false);
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        redisTemplate.afterPropertiesSet();
+    }
+
+    @Override
+    public byte[] get(String key) {
+        return redisTemplate.opsForValue().get(key);
+    }
+
+    @Override
+    public void put(String key, byte[] value, Duration timeToLive) {
+        redisTemplate.opsForValue().set(key, value, timeToLive);
+    }
+
+    @Override
+    public void delete(String key) {
+        redisTemplate.delete(key);
+    }
+
+    @Override
+    public void deleteByPrefix(String prefix) {
+        ScanOptions options = ScanOptions.scanOptions().match(prefix + "*").count(SCAN_BATCH_SIZE).build();
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            try (Cursor<byte[]> cursor = connection.scan(options)) {
+                List<byte[]> keys = new ArrayList<>(SCAN_BATCH_SIZE);
+                while (cursor.hasNext()) {
+                    keys.add(cursor.next());
+                    if(keys.size() == SCAN_BATCH_SIZE) {
+                        connection.del(keys.toArray(new byte[0][]));
+                        keys.clear();
+                    }
+                }
+                if(!keys.isEmpty()) {
+                    connection.del(keys.toArray(new byte[0][]));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        });
+    }
+}
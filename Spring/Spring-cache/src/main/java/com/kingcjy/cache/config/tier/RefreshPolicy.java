@@ -0,0 +1,43 @@
+package com.kingcjy.cache.config.tier;
+
+import java.time.Duration;
+
+/**
+ * Splits the age of a local entry into fresh, due for a background refresh, and expired. The local tier keeps
+ * expired entries for another {@code staleIfError}, so they can be served when reloading them fails.
+ */
+public class RefreshPolicy {
+
+    private final long refreshAfterNanos;
+    private final long timeToLiveNanos;
+    private final Duration localTimeToLive;
+
+    public RefreshPolicy(Duration timeToLive, Double refreshAheadFactor, Duration staleIfError) {
+        if(timeToLive == null) {
+            throw new IllegalArgumentException("refresh-ahead and stale-if-error need a time to live");
+        }
+        if(refreshAheadFactor != null && (refreshAheadFactor <= 0 || refreshAheadFactor > 1)) {
+            throw new IllegalArgumentException("refresh-ahead-factor must be in (0, 1], was " + refreshAheadFactor);
+        }
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.refreshAfterNanos = refreshAheadFactor != null
+                ? (long) (timeToLiveNanos * refreshAheadFactor)
+                : Long.MAX_VALUE;
+        this.localTimeToLive = staleIfError != null ? timeToLive.plus(staleIfError) : timeToLive;
+    }
+
+    boolean isDueForRefresh(long ageNanos) {
+        return ageNanos >= refreshAfterNanos;
+    }
+
+    boolean isExpired(long ageNanos) {
+        return ageNanos >= timeToLiveNanos;
+    }
+
+    /**
+     * @return how long the local tier has to keep an entry, including the time it may be served stale
+     */
+    public Duration getLocalTimeToLive() {
+        return localTimeToLive;
+    }
+}
@@ -0,0 +1,18 @@
+package com.kingcjy.cache.config.tier;
+
+import java.time.Duration;
+
+/**
+ * Byte oriented key-value store backing the shared tier of {@link TwoTierCache}.
+ * Implementations must be thread safe; failures surface as runtime exceptions.
+ */
+public interface RemoteCacheStore {
+
+    byte[] get(String key);
+
+    void put(String key, byte[] value, Duration timeToLive);
+
+    void delete(String key);
+
+    void deleteByPrefix(String prefix);
+}
@@ -0,0 +1,33 @@
+package com.kingcjy.cache.config.tier;
+
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.time.Duration;
+
+/**
+ * Expires every entry a fixed time after it was last written, like {@code expireAfterWrite}, but through variable
+ * expiry, so entries restored from a snapshot can be put with a shorter time to live.
+ */
+class TimeToLiveExpiry implements Expiry<Object, Object> {
+
+    private final long timeToLive;
+
+    TimeToLiveExpiry(Duration timeToLive) {
+        this.timeToLive = timeToLive.toNanos();
+    }
+
+    @Override
+    public long expireAfterCreate(Object key, Object value, long currentTime) {
+        return timeToLive;
+    }
+
+    @Override
+    public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+        return timeToLive;
+    }
+
+    @Override
+    public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+        return currentDuration;
+    }
+}
@@ -0,0 +1,459 @@
+package com.kingcjy.cache.config.tier;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.kingcjy.cache.config.snapshot.CacheSnapshot;
+import com.kingcjy.cache.config.snapshot.CacheSnapshotWriter;
+import com.kingcjy.cache.config.snapshot.SnapshotCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.cache.support.NullValue;
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded in-process tier in front of an optional shared {@link RemoteCacheStore}.
+ * Reads that miss locally are looked up remotely and promoted; writes go to both tiers.
+ * The remote tier is best effort: when it fails the cache keeps working from the local tier and the backend.
+ * <p>
+ * {@link #get(Object, Callable)} loads single-flight: one caller per key runs the loader, outside of any lock
+ * of the local tier, while concurrent callers for the same key wait on its future. A load that finishes after the
+ * key was evicted or the cache cleared still answers its callers, but does not cache what it loaded.
+ * With a {@link RefreshPolicy} it also refreshes entries ahead of expiry through the {@link CacheRefresher},
+ * and serves an expired entry for the policy's grace period when reloading it fails.
+ * <p>
+ * Restored from a {@link CacheSnapshot}, it looks up local misses in the snapshot, and moves the entries it finds
+ * into the local tier with what is left of their time to live. That needs a local tier with variable expiry, as
+ * {@link TwoTierCacheManager} builds it; a snapshot is not restored into one that expires a fixed time after write.
+ * Nor is it used with a remote tier: other nodes may have updated or evicted the shared entries while this one was
+ * down, and a remote miss can not tell an eviction from a key never cached, so a cache with a remote tier neither
+ * writes nor restores snapshots and warms up from the remote tier instead.
+ */
+@Slf4j
+public class TwoTierCache extends AbstractValueAdaptingCache implements SnapshotCache {
+
+    private final String name;
+    private final Cache<Object, Object> local;
+    private final RemoteCacheStore remote;
+    private final Duration remoteTimeToLive;
+    private final String keyPrefix;
+    private final Duration localTimeToLive;
+    private final RefreshPolicy refreshPolicy;
+    private final CacheRefresher refresher;
+    private final ConcurrentMap<Object, Load> loading = new ConcurrentHashMap<>();
+    private volatile CacheSnapshot snapshot;
+
+    private final SerializingConverter serializer = new SerializingConverter();
+    private final DeserializingConverter deserializer = new DeserializingConverter();
+
+    public TwoTierCache(String name, Cache<Object, Object> local, RemoteCacheStore remote,
+                        Duration remoteTimeToLive, String keyPrefix) {
+        this(name, local, remote, remoteTimeToLive, keyPrefix, null, null, null);
+    }
+
+    /**
+     * @param local must expire entries {@link RefreshPolicy#getLocalTimeToLive()} after write, either fixed or
+     *              variably with that duration for every write, or else {@code timeToLive} after write
+     * @param timeToLive of the local tier without a refresh policy, {@code null} when entries do not expire
+     */
+    public TwoTierCache(String name, Cache<Object, Object> local, RemoteCacheStore remote, Duration remoteTimeToLive,
+                        String keyPrefix, Duration timeToLive, RefreshPolicy refreshPolicy, CacheRefresher refresher) {
+        super(true);
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.remoteTimeToLive = remoteTimeToLive;
+        this.keyPrefix = keyPrefix + name + "::";
+        this.localTimeToLive = refreshPolicy != null ? refreshPolicy.getLocalTimeToLive() : timeToLive;
+        this.refreshPolicy = refreshPolicy;
+        this.refresher = refresher;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Cache<Object, Object> getNativeCache() {
+        return local;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        Object value = localLookup(key);
+        if(value == null) {
+            value = snapshotLookup(key);
+        }
+        if(value == null && remote != null) {
+            value = remoteGet(key);
+            if(value != null) {
+                local.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object value = local.getIfPresent(key);
+        if(value == null) {
+            value = lookup(key);
+            return (T) fromStoreValue(value != null ? value : load(key, valueLoader));
+        }
+        if(refreshPolicy != null) {
+            long age = ageOf(key);
+            if(refreshPolicy.isExpired(age)) {
+                return (T) fromStoreValue(loadOrServeStale(key, valueLoader, value));
+            }
+            if(refreshPolicy.isDueForRefresh(age) && refresher != null) {
+                refresh(key, valueLoader);
+            }
+        }
+        return (T) fromStoreValue(value);
+    }
+
+    /**
+     * @return the local value, unless it is only kept to be served stale
+     */
+    private Object localLookup(Object key) {
+        Object value = local.getIfPresent(key);
+        if(value != null && refreshPolicy != null && refreshPolicy.isExpired(ageOf(key))) {
+            return null;
+        }
+        return value;
+    }
+
+    /**
+     * Moves the snapshot entry of {@code key}, if any, into the local tier.
+     *
+     * @return the entry's value, unless it is only kept to be served stale
+     */
+    private Object snapshotLookup(Object key) {
+        CacheSnapshot snapshot = this.snapshot;
+        if(snapshot == null) {
+            return null;
+        }
+        if(snapshot.isExhausted()) {
+            this.snapshot = null;
+            return null;
+        }
+        CacheSnapshot.Entry entry = snapshot.take(String.valueOf(key));
+        if(entry == null) {
+            return null;
+        }
+        Object value;
+        try {
+            value = entry.getValue() != null ? deserializer.convert(entry.getValue()) : NullValue.INSTANCE;
+        } catch (RuntimeException e) {
+            log.debug("dropping unreadable snapshot entry {} in {}", key, name, e);
+            return null;
+        }
+        Duration timeToLive = entry.getTimeToLive();
+        Optional<Policy.VarExpiration<Object, Object>> expiration = local.policy().expireVariably();
+        if(timeToLive != null && expiration.isPresent()) {
+            // a restored entry never outlives what a fresh write would get
+            if(localTimeToLive != null && timeToLive.compareTo(localTimeToLive) > 0) {
+                timeToLive = localTimeToLive;
+            }
+            expiration.get().putIfAbsent(key, value, timeToLive);
+        } else {
+            local.asMap().putIfAbsent(key, value);
+        }
+        return localLookup(key);
+    }
+
+    private long ageOf(Object key) {
+        Optional<Policy.VarExpiration<Object, Object>> variable = local.policy().expireVariably();
+        if(variable.isPresent()) {
+            OptionalLong remaining = variable.get().getExpiresAfter(key, TimeUnit.NANOSECONDS);
+            return remaining.isPresent()
+                    ? refreshPolicy.getLocalTimeToLive().toNanos() - remaining.getAsLong()
+                    : Long.MAX_VALUE;
+        }
+        return local.policy().expireAfterWrite()
+                .map(expiration -> expiration.ageOf(key, TimeUnit.NANOSECONDS).orElse(Long.MAX_VALUE))
+                .orElse(0L);
+    }
+
+    private Object load(Object key, Callable<?> valueLoader) {
+        Load load = new Load();
+        Load inFlight = loading.putIfAbsent(key, load);
+        if(inFlight != null) {
+            return await(key, inFlight);
+        }
+        try {
+            // another caller may have finished loading between the lookup and registering this load
+            Object value = localLookup(key);
+            if(value == null) {
+                value = toStoreValue(call(key, valueLoader));
+                store(key, value, load);
+            }
+            load.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    private Object loadOrServeStale(Object key, Callable<?> valueLoader, Object stale) {
+        try {
+            return load(key, valueLoader);
+        } catch (RuntimeException e) {
+            log.warn("serving stale {} in {}, reloading it failed", key, name, e);
+            if(refresher != null) {
+                refresher.staleServed(name);
+            }
+            return stale;
+        }
+    }
+
+    /**
+     * Reloads {@code key} in the background, unless a load of it is already in flight. Callers that find the entry
+     * expired meanwhile wait for this refresh like for any other load.
+     */
+    private void refresh(Object key, Callable<?> valueLoader) {
+        Load load = new Load();
+        if(loading.putIfAbsent(key, load) != null) {
+            return;
+        }
+        boolean submitted = refresher.submit(name, key, () -> {
+            try {
+                Object value = toStoreValue(call(key, valueLoader));
+                store(key, value, load);
+                load.complete(value);
+            } catch (RuntimeException | Error e) {
+                load.completeExceptionally(e);
+                throw e;
+            } finally {
+                loading.remove(key, load);
+            }
+        });
+        if(!submitted) {
+            loading.remove(key, load);
+            load.completeExceptionally(new IllegalStateException("refresh of " + key + " in " + name + " was rejected"));
+        }
+    }
+
+    /**
+     * Caches what {@code load} loaded, unless the key was evicted meanwhile. An evict racing with the writes wins.
+     */
+    private void store(Object key, Object value, Load load) {
+        if(load.evicted) {
+            return;
+        }
+        local.put(key, value);
+        remotePut(key, value);
+        if(load.evicted) {
+            local.asMap().remove(key, value);
+            remoteDelete(key);
+        }
+    }
+
+    private static Object call(Object key, Callable<?> valueLoader) {
+        try {
+            return valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+    }
+
+    private Object await(Object key, CompletableFuture<Object> inFlight) {
+        try {
+            return inFlight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for " + key + " in " + name, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        Object storeValue = toStoreValue(value);
+        local.put(key, storeValue);
+        discardSnapshot(key);
+        remotePut(key, storeValue);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        Object existing = lookup(key);
+        if(existing != null) {
+            return toValueWrapper(existing);
+        }
+        Object storeValue = toStoreValue(value);
+        existing = local.asMap().putIfAbsent(key, storeValue);
+        if(existing == null) {
+            remotePut(key, storeValue);
+        }
+        return toValueWrapper(existing);
+    }
+
+    @Override
+    public void evict(Object key) {
+        Load load = loading.get(key);
+        if(load != null) {
+            load.evicted = true;
+        }
+        local.invalidate(key);
+        discardSnapshot(key);
+        remoteDelete(key);
+    }
+
+    @Override
+    public void clear() {
+        loading.values().forEach(load -> load.evicted = true);
+        snapshot = null;
+        local.invalidateAll();
+        if(remote != null) {
+            try {
+                remote.deleteByPrefix(keyPrefix);
+            } catch (RuntimeException e) {
+                log.warn("remote clear of {} failed", name, e);
+            }
+        }
+    }
+
+    @Override
+    public void restoreFrom(CacheSnapshot snapshot) {
+        if(remote != null) {
+            log.info("not restoring {} from a snapshot, it is kept up to date by the remote tier", name);
+            return;
+        }
+        if(local.policy().expireAfterWrite().isPresent()) {
+            log.warn("not restoring {} from a snapshot, its local tier can not keep what is left of a time to live", name);
+            return;
+        }
+        this.snapshot = snapshot;
+    }
+
+    @Override
+    public void writeSnapshot(CacheSnapshotWriter writer) throws IOException {
+        if(remote != null) {
+            return;
+        }
+        CacheSnapshot snapshot = this.snapshot;
+        if(snapshot != null) {
+            // written first, so an entry that is also cached locally by now is read back with its local value
+            snapshot.writeTo(writer);
+        }
+        long now = System.currentTimeMillis();
+        for(Map.Entry<Object, Object> entry : local.asMap().entrySet()) {
+            long remaining = remainingNanos(entry.getKey());
+            if(remaining <= 0) {
+                continue;
+            }
+            byte[] value = null;
+            if(entry.getValue() != NullValue.INSTANCE) {
+                try {
+                    value = serializer.convert(entry.getValue());
+                } catch (RuntimeException e) {
+                    log.debug("leaving {} in {} out of the snapshot, it can not be serialized", entry.getKey(), name, e);
+                    continue;
+                }
+            }
+            writer.write(String.valueOf(entry.getKey()).getBytes(StandardCharsets.UTF_8), value,
+                    remaining == Long.MAX_VALUE ? 0 : now + TimeUnit.NANOSECONDS.toMillis(remaining));
+        }
+    }
+
+    /**
+     * @return the time the local entry has left, {@link Long#MAX_VALUE} when it does not expire, or 0 when it is gone
+     */
+    private long remainingNanos(Object key) {
+        Policy<Object, Object> policy = local.policy();
+        if(policy.expireVariably().isPresent()) {
+            OptionalLong remaining = policy.expireVariably().get().getExpiresAfter(key, TimeUnit.NANOSECONDS);
+            return remaining.isPresent() ? remaining.getAsLong() : 0;
+        }
+        if(policy.expireAfterWrite().isPresent()) {
+            Policy.Expiration<Object, Object> expiration = policy.expireAfterWrite().get();
+            OptionalLong age = expiration.ageOf(key, TimeUnit.NANOSECONDS);
+            return age.isPresent() ? expiration.getExpiresAfter(TimeUnit.NANOSECONDS) - age.getAsLong() : 0;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private void discardSnapshot(Object key) {
+        CacheSnapshot snapshot = this.snapshot;
+        if(snapshot != null) {
+            snapshot.discard(String.valueOf(key));
+        }
+    }
+
+    private Object remoteGet(Object key) {
+        byte[] bytes;
+        try {
+            bytes = remote.get(remoteKey(key));
+        } catch (RuntimeException e) {
+            log.warn("remote lookup of {} in {} failed", key, name, e);
+            return null;
+        }
+        if(bytes == null) {
+            return null;
+        }
+        try {
+            return deserializer.convert(bytes);
+        } catch (RuntimeException e) {
+            // written by an incompatible version of the class, treat it as a miss so the next put overwrites it
+            log.debug("dropping unreadable remote entry {} in {}", key, name, e);
+            return null;
+        }
+    }
+
+    private void remotePut(Object key, Object storeValue) {
+        if(remote == null) {
+            return;
+        }
+        try {
+            remote.put(remoteKey(key), serializer.convert(storeValue), remoteTimeToLive);
+        } catch (RuntimeException e) {
+            log.warn("remote put of {} in {} failed", key, name, e);
+        }
+    }
+
+    private void remoteDelete(Object key) {
+        if(remote == null) {
+            return;
+        }
+        try {
+            remote.delete(remoteKey(key));
+        } catch (RuntimeException e) {
+            log.warn("remote evict of {} in {} failed", key, name, e);
+        }
+    }
+
+    private String remoteKey(Object key) {
+        return keyPrefix + key;
+    }
+
+    private static class Load extends CompletableFuture<Object> {
+        private volatile boolean evicted;
+    }
+}
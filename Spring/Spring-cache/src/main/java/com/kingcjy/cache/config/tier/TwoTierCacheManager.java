@@ -0,0 +1,102 @@
+package com.kingcjy.cache.config.tier;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.kingcjy.cache.config.CacheProperty;
+import com.kingcjy.cache.config.offheap.CacheCodec;
+import com.kingcjy.cache.config.offheap.JdkSerializationCodec;
+import com.kingcjy.cache.config.offheap.OffHeapCache;
+import com.kingcjy.cache.config.offheap.OffHeapStore;
+import com.kingcjy.cache.config.snapshot.CacheSnapshotter;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Creates a {@link TwoTierCache} per cache name. The local tier is a Caffeine cache, which evicts with W-TinyLFU
+ * once it reaches its maximum size. Caches that are not configured under {@code cache.caches} are created on first
+ * use with the {@code cache.spec} defaults. Caches configured with an off-heap capacity are created as
+ * {@link OffHeapCache} instead. With a {@link CacheSnapshotter}, every cache is restored from its snapshot when it
+ * is created.
+ */
+public class TwoTierCacheManager implements CacheManager {
+
+    private final ConcurrentMap<String, Cache> caches = new ConcurrentHashMap<>();
+    private final CacheProperty cacheProperty;
+    private final RemoteCacheStore remote;
+    private final CacheRefresher refresher;
+    private final CacheCodec offHeapCodec;
+    private final CacheSnapshotter snapshotter;
+
+    public TwoTierCacheManager(CacheProperty cacheProperty, RemoteCacheStore remote) {
+        this(cacheProperty, remote, null, new JdkSerializationCodec(), null);
+    }
+
+    /**
+     * @param refresher runs refresh-ahead loads; without it entries are only reloaded once they expire
+     * @param offHeapCodec encodes the values of off-heap caches
+     * @param snapshotter restores and snapshots the caches; without it every cache starts empty
+     */
+    public TwoTierCacheManager(CacheProperty cacheProperty, RemoteCacheStore remote, CacheRefresher refresher,
+                               CacheCodec offHeapCodec, CacheSnapshotter snapshotter) {
+        this.cacheProperty = cacheProperty;
+        this.remote = remote;
+        this.refresher = refresher;
+        this.offHeapCodec = offHeapCodec;
+        this.snapshotter = snapshotter;
+        cacheProperty.getCaches().keySet().forEach(this::getCache);
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = caches.get(name);
+        if(cache != null) {
+            return cache;
+        }
+        return caches.computeIfAbsent(name, cacheName -> {
+            Cache created = createCache(cacheName);
+            if(snapshotter != null) {
+                snapshotter.register(created);
+            }
+            return created;
+        });
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    private Cache createCache(String name) {
+        CacheProperty.Spec spec = cacheProperty.getCaches()
+                .getOrDefault(name, cacheProperty.getSpec())
+                .merge(cacheProperty.getSpec());
+        if(spec.getOffHeapCapacity() != null) {
+            CacheProperty.OffHeap offHeap = cacheProperty.getOffHeap();
+            OffHeapStore store = new OffHeapStore(spec.getOffHeapCapacity().toBytes(),
+                    (int) offHeap.getPageSize().toBytes(), offHeap.getSegments());
+            return new OffHeapCache(name, store, offHeapCodec, spec.getTimeToLive());
+        }
+
+        RefreshPolicy refreshPolicy = spec.getRefreshAheadFactor() != null || spec.getStaleIfError() != null
+                ? new RefreshPolicy(spec.getTimeToLive(), spec.getRefreshAheadFactor(), spec.getStaleIfError())
+                : null;
+
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().recordStats();
+        if(spec.getMaximumSize() != null) {
+            builder.maximumSize(spec.getMaximumSize());
+        }
+        if(refreshPolicy != null) {
+            builder.expireAfter(new TimeToLiveExpiry(refreshPolicy.getLocalTimeToLive()));
+        } else if(spec.getTimeToLive() != null) {
+            builder.expireAfter(new TimeToLiveExpiry(spec.getTimeToLive()));
+        }
+
+        CacheProperty.Remote remoteProperty = cacheProperty.getRemote();
+        return new TwoTierCache(name, builder.build(), remote, remoteProperty.getTimeToLive(), remoteProperty.getKeyPrefix(),
+                spec.getTimeToLive(), refreshPolicy, refresher);
+    }
+}
@@ -1,8 +1,36 @@
 package com.kingcjy.cache.controller;
 
-import org.springframework.web.bind.annotation.RestController;
+import com.kingcjy.cache.dto.CacheStatsDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
 
 @RestController
+@RequestMapping("/api/caches")
 public class CacheController {
-    @
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @GetMapping("")
+    public ResponseEntity<?> getCaches() {
+        List<CacheStatsDto> cacheList = cacheManager.getCacheNames()
+                .stream()
+                .map(name -> CacheStatsDto.of(cacheManager.getCache(name)))
+                .collect(Collectors.toList());
+        return new ResponseEntity<>(cacheList, HttpStatus.OK);
+    }
+    @DeleteMapping("/{name}")
+    public ResponseEntity<?> clearCache(@PathVariable String name) {
+        if(!cacheManager.getCacheNames().contains(name)) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        cacheManager.getCache(name).clear();
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
 }
@@ -0,0 +1,30 @@
+package com.kingcjy.cache.controller;
+
+import com.kingcjy.cache.dto.ProductDto;
+import com.kingcjy.cache.service.ProductService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/products")
+public class ProductController {
+
+    @Autowired
+    private ProductService productService;
+
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getProduct(@PathVariable Long id) {
+        ProductDto product = productService.getProduct(id);
+        if(product == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(product, HttpStatus.OK);
+    }
+    @DeleteMapping("/{id}/cache")
+    public ResponseEntity<?> evictProduct(@PathVariable Long id) {
+        productService.evictProduct(id);
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+}
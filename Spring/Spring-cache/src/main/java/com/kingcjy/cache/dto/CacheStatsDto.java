@@ -0,0 +1,38 @@
+package com.kingcjy.cache.dto;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.kingcjy.cache.config.offheap.OffHeapStore;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.cache.Cache;
+
+@Getter
+@AllArgsConstructor
+public class CacheStatsDto {
+    private String name;
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private double hitRate;
+
+    /**
+     * @return statistics of the in-process or off-heap tier, or only the name when the cache does not keep any
+     */
+    public static CacheStatsDto of(Cache cache) {
+        if(cache.getNativeCache() instanceof OffHeapStore) {
+            OffHeapStore store = (OffHeapStore) cache.getNativeCache();
+            long hits = store.getHitCount();
+            long misses = store.getMissCount();
+            return new CacheStatsDto(cache.getName(), store.size(), hits, misses,
+                    hits + misses == 0 ? 1.0 : (double) hits / (hits + misses));
+        }
+        if(!(cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache)) {
+            return new CacheStatsDto(cache.getName(), -1, 0, 0, 0);
+        }
+        com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache =
+                (com.github.benmanes.caffeine.cache.Cache<?, ?>) cache.getNativeCache();
+        CacheStats stats = nativeCache.stats();
+        return new CacheStatsDto(cache.getName(), nativeCache.estimatedSize(),
+                stats.hitCount(), stats.missCount(), stats.hitRate());
+    }
+}
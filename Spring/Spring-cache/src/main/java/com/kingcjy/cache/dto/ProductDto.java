@@ -0,0 +1,16 @@
+package com.kingcjy.cache.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.Serializable;
+
+@Getter
+@AllArgsConstructor
+public class ProductDto implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+    private String title;
+    private String contents;
+}
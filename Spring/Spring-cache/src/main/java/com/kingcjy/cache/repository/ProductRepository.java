@@ -0,0 +1,27 @@
+package com.kingcjy.cache.repository;
+
+import com.kingcjy.cache.dto.ProductDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+
+/**
+ * Stands in for the system of record behind the product cache; every lookup pays {@code product.backend-latency}.
+ */
+@Repository
+public class ProductRepository {
+
+    @Value("${product.backend-latency:50ms}")
+    private Duration latency;
+
+    public ProductDto findById(Long id) {
+        try {
+            Thread.sleep(latency.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while loading product " + id, e);
+        }
+        return new ProductDto(id, "product " + id, "contents of product " + id);
+    }
+}
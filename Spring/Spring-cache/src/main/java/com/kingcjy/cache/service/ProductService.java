@@ -0,0 +1,28 @@
+package com.kingcjy.cache.service;
+
+import com.kingcjy.cache.dto.ProductDto;
+import com.kingcjy.cache.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+
+@Service
+public class ProductService {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    /**
+     * {@code sync} routes the miss through {@link org.springframework.cache.Cache#get(Object, java.util.concurrent.Callable)},
+     * so concurrent misses on one product share a single repository call.
+     */
+    @Cacheable(cacheNames = "product", key = "#id", sync = true)
+    public ProductDto getProduct(Long id) {
+        return productRepository.findById(id);
+    }
+
+    @CacheEvict(cacheNames = "product", key = "#id")
+    public void evictProduct(Long id) {
+    }
+}
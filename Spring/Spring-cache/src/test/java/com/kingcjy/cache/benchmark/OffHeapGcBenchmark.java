@@ -0,0 +1,79 @@
+package com.kingcjy.cache.benchmark;
+
+import com.kingcjy.cache.config.offheap.JdkSerializationCodec;
+import com.kingcjy.cache.config.offheap.OffHeapCache;
+import com.kingcjy.cache.config.offheap.OffHeapStore;
+import com.kingcjy.cache.dto.ProductDto;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Garbage collection cost of holding a large product cache on the heap and off the heap. Each cache is filled, then
+ * read and rewritten at random, and the collections, collection time and retained heap during that phase are
+ * reported. Not part of the default test run, start it with {@code mvn test -Dtest=OffHeapGcBenchmark}.
+ */
+@Slf4j
+public class OffHeapGcBenchmark {
+
+    private static final int ENTRIES = 300000;
+    private static final int OPERATIONS = 3000000;
+    private static final int CONTENTS_LENGTH = 1000;
+
+    @Test
+    public void churn() {
+        run("on-heap", new ConcurrentMapCache("product", false));
+        run("off-heap", new OffHeapCache("product", new OffHeapStore(1024L * 1024 * 1024, 1024 * 1024, 16),
+                new JdkSerializationCodec(), null));
+    }
+
+    private void run(String name, Cache cache) {
+        String contents = new String(new char[CONTENTS_LENGTH]).replace('\0', 'c');
+        for(long id = 0; id < ENTRIES; id++) {
+            cache.put(id, new ProductDto(id, "title" + id, contents + id));
+        }
+        System.gc();
+        long retained = usedHeap();
+
+        long[] before = collections();
+        long start = System.nanoTime();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for(int i = 0; i < OPERATIONS; i++) {
+            long id = random.nextInt(ENTRIES);
+            if(i % 10 == 0) {
+                cache.put(id, new ProductDto(id, "title" + id, contents + id));
+            } else {
+                assertThat(cache.get(id, ProductDto.class)).isNotNull();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long[] after = collections();
+
+        log.info("{}: retained heap {} MB, {} operations in {} ms, {} collections taking {} ms",
+                name, retained / (1024 * 1024), OPERATIONS, elapsed / 1000000,
+                after[0] - before[0], after[1] - before[1]);
+        cache.clear();
+        System.gc();
+    }
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long[] collections() {
+        long count = 0;
+        long time = 0;
+        for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += collector.getCollectionCount();
+            time += collector.getCollectionTime();
+        }
+        return new long[] {count, time};
+    }
+}
@@ -0,0 +1,86 @@
+package com.kingcjy.cache.benchmark;
+
+import com.kingcjy.cache.config.CacheProperty;
+import com.kingcjy.cache.config.offheap.JdkSerializationCodec;
+import com.kingcjy.cache.config.snapshot.CacheSnapshotter;
+import com.kingcjy.cache.config.tier.TwoTierCacheManager;
+import com.kingcjy.cache.dto.ProductDto;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.cache.Cache;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hit ratio of the product cache right after a restart, starting empty and restored from a snapshot, under a skewed
+ * read workload. Not part of the default test run, start it with {@code mvn test -Dtest=WarmRestartBenchmark}.
+ */
+@Slf4j
+public class WarmRestartBenchmark {
+
+    private static final int PRODUCTS = 200000;
+    private static final long MAXIMUM_SIZE = 20000;
+    private static final int STEADY_STATE_REQUESTS = 1000000;
+    private static final int WINDOW = 20000;
+    private static final int WINDOWS = 5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void restart() throws Exception {
+        CacheProperty cacheProperty = new CacheProperty();
+        cacheProperty.getCaches().put("product", new CacheProperty.Spec(MAXIMUM_SIZE, Duration.ofMinutes(10), null, null, null));
+        cacheProperty.getSnapshot().setDirectory(folder.getRoot().getPath());
+        cacheProperty.getSnapshot().setInterval(Duration.ofHours(1));
+
+        CacheSnapshotter snapshotter = new CacheSnapshotter(cacheProperty.getSnapshot());
+        Cache running = new TwoTierCacheManager(cacheProperty, null, null, new JdkSerializationCodec(), snapshotter)
+                .getCache("product");
+        Random random = new Random(42);
+        log.info("steady state hit ratio {}", String.format("%.3f", hitRatio(running, random, STEADY_STATE_REQUESTS)));
+        long start = System.nanoTime();
+        snapshotter.destroy();
+        log.info("snapshot of {} KB written in {} ms", Files.size(folder.getRoot().toPath().resolve("product.snapshot")) / 1024,
+                (System.nanoTime() - start) / 1000000);
+
+        Cache cold = new TwoTierCacheManager(cacheProperty, null).getCache("product");
+        log.info("cold restart: {}", windows(cold, new Random(7)));
+
+        start = System.nanoTime();
+        CacheSnapshotter restoring = new CacheSnapshotter(cacheProperty.getSnapshot());
+        Cache warm = new TwoTierCacheManager(cacheProperty, null, null, new JdkSerializationCodec(), restoring)
+                .getCache("product");
+        log.info("snapshot opened in {} ms", (System.nanoTime() - start) / 1000000);
+        log.info("warm restart: {}", windows(warm, new Random(7)));
+        restoring.destroy();
+    }
+
+    private String windows(Cache cache, Random random) {
+        StringBuilder ratios = new StringBuilder("hit ratio per " + WINDOW + " requests");
+        for(int window = 0; window < WINDOWS; window++) {
+            ratios.append(String.format(" %.3f", hitRatio(cache, random, WINDOW)));
+        }
+        return ratios.toString();
+    }
+
+    private static double hitRatio(Cache cache, Random random, int requests) {
+        AtomicInteger loads = new AtomicInteger();
+        for(int i = 0; i < requests; i++) {
+            // most requests go to a small set of popular products
+            long id = (long) (Math.pow(random.nextDouble(), 4) * PRODUCTS);
+            Callable<ProductDto> backend = () -> {
+                loads.incrementAndGet();
+                return new ProductDto(id, "product " + id, "contents " + id);
+            };
+            cache.get(id, backend);
+        }
+        return 1 - (double) loads.get() / requests;
+    }
+}
@@ -0,0 +1,52 @@
+package com.kingcjy.cache.config;
+
+import com.kingcjy.cache.config.tier.InMemoryRemoteCacheStore;
+import com.kingcjy.cache.config.tier.RemoteCacheStore;
+import com.kingcjy.cache.config.tier.TwoTierCacheManager;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "cache.snapshot.enabled=false")
+public class CacheConfigTests {
+
+    @TestConfiguration
+    static class EmbeddedRemoteCacheStoreConfig {
+        @Bean
+        public RemoteCacheStore remoteCacheStore() {
+            return new InMemoryRemoteCacheStore();
+        }
+    }
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private InMemoryRemoteCacheStore remoteCacheStore;
+
+    @Test
+    public void cachesAreTwoTiered() {
+        assertThat(cacheManager).isInstanceOf(TwoTierCacheManager.class);
+        assertThat(cacheManager.getCacheNames()).contains("product");
+
+        cacheManager.getCache("product").put(1L, "keyboard");
+        assertThat(remoteCacheStore.containsKey("cache:product::1")).isTrue();
+    }
+
+    @Test
+    public void redisHealthIsOffWithoutTheRemoteTier() {
+        assertThat(applicationContext.containsBean("redisHealthIndicator")).isFalse();
+    }
+}
@@ -0,0 +1,194 @@
+package com.kingcjy.cache.config.offheap;
+
+import com.kingcjy.cache.config.CacheProperty;
+import com.kingcjy.cache.config.tier.TwoTierCacheManager;
+import com.kingcjy.cache.dto.ProductDto;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OffHeapCacheTests {
+
+    private static final int PAGE_SIZE = 64 * 1024;
+
+    private OffHeapCache cache(long capacity, Duration timeToLive) {
+        return new OffHeapCache("product", new OffHeapStore(capacity, PAGE_SIZE, 4), new JdkSerializationCodec(), timeToLive);
+    }
+
+    @Test
+    public void storesCopiesOfValues() {
+        OffHeapCache cache = cache(1024 * 1024, null);
+        cache.put(1L, new ProductDto(1L, "keyboard", "contents"));
+        cache.put(2L, null);
+
+        ProductDto product = cache.get(1L, ProductDto.class);
+        assertThat(product.getTitle()).isEqualTo("keyboard");
+        assertThat(cache.get(1L, ProductDto.class)).isNotSameAs(product);
+        assertThat(cache.get(2L)).isNotNull();
+        assertThat(cache.get(2L).get()).isNull();
+        assertThat(cache.get(3L)).isNull();
+
+        cache.put(1L, new ProductDto(1L, "mouse", "contents"));
+        assertThat(cache.get(1L, ProductDto.class).getTitle()).isEqualTo("mouse");
+        cache.evict(1L);
+        assertThat(cache.get(1L)).isNull();
+        assertThat(cache.getNativeCache().size()).isEqualTo(1);
+
+        cache.clear();
+        assertThat(cache.get(2L)).isNull();
+    }
+
+    @Test
+    public void growsIndexAndKeepsEveryEntry() {
+        OffHeapCache cache = new OffHeapCache("product", new OffHeapStore(64 * 1024 * 1024, PAGE_SIZE, 4), new StringCodec(), null);
+        for(int i = 0; i < 100000; i++) {
+            cache.put(i, "product " + i);
+        }
+
+        assertThat(cache.getNativeCache().size()).isEqualTo(100000);
+        for(int i = 0; i < 100000; i++) {
+            assertThat(cache.get(i, String.class)).isEqualTo("product " + i);
+        }
+    }
+
+    @Test
+    public void evictsOldestPagesAtCapacity() {
+        OffHeapCache cache = new OffHeapCache("product", new OffHeapStore(4 * PAGE_SIZE, PAGE_SIZE, 1), new StringCodec(), null);
+        for(int i = 0; i < 20000; i++) {
+            cache.put(i, "product " + i);
+        }
+
+        OffHeapStore store = cache.getNativeCache();
+        long allocated = store.getAllocatedBytes();
+        for(int i = 20000; i < 40000; i++) {
+            cache.put(i, "product " + i);
+        }
+        assertThat(store.getAllocatedBytes()).isEqualTo(allocated);
+        assertThat(store.getEvictionCount()).isPositive();
+        assertThat(store.size()).isEqualTo(40000 - store.getEvictionCount());
+        assertThat(cache.get(0)).isNull();
+        assertThat(cache.get(39999, String.class)).isEqualTo("product 39999");
+    }
+
+    @Test
+    public void expiresEntries() throws Exception {
+        OffHeapCache cache = cache(1024 * 1024, Duration.ofMillis(50));
+        cache.put(1L, "keyboard");
+        assertThat(cache.get(1L, String.class)).isEqualTo("keyboard");
+
+        Thread.sleep(100);
+        assertThat(cache.get(1L)).isNull();
+        assertThat(cache.get(1L, () -> "mouse")).isEqualTo("mouse");
+    }
+
+    @Test
+    public void skipsEntriesLargerThanAPage() {
+        OffHeapCache cache = cache(1024 * 1024, null);
+        cache.put(1L, new String(new char[PAGE_SIZE]));
+
+        assertThat(cache.get(1L)).isNull();
+    }
+
+    @Test
+    public void readsAndWritesConcurrently() throws Exception {
+        OffHeapCache cache = new OffHeapCache("product", new OffHeapStore(8 * PAGE_SIZE, PAGE_SIZE, 2), new StringCodec(), null);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for(int t = 0; t < 8; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for(int i = 0; i < 20000; i++) {
+                        int key = (i * 31 + thread) % 5000;
+                        if(i % 4 == 0) {
+                            cache.put(key, "product " + key);
+                        } else {
+                            String value = cache.get(key, String.class);
+                            assertThat(value).isIn(null, "product " + key);
+                        }
+                    }
+                }));
+            }
+            for(Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void loadFinishingAfterEvictIsNotCached() throws Exception {
+        OffHeapCache cache = cache(1024 * 1024, null);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> result = executor.submit(() -> cache.get(1L, () -> {
+                loading.countDown();
+                release.await();
+                return "keyboard";
+            }));
+            loading.await();
+            cache.evict(1L);
+            release.countDown();
+
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("keyboard");
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(cache.get(1L)).isNull();
+    }
+
+    @Test
+    public void visitingEntriesDoesNotBlockWriters() throws Exception {
+        OffHeapStore store = new OffHeapStore(1024 * 1024, PAGE_SIZE, 1);
+        for(int i = 0; i < 100; i++) {
+            store.put(("product " + i).getBytes(), "keyboard".getBytes(), null);
+        }
+        AtomicInteger visited = new AtomicInteger();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            store.forEach((key, value, timeToLive) -> {
+                if(visited.getAndIncrement() == 0) {
+                    // a snapshot writing this entry must not hold up a put to the same segment
+                    Future<?> put = executor.submit(() -> store.put("product 100".getBytes(), "mouse".getBytes(), null));
+                    try {
+                        put.get(5, TimeUnit.SECONDS);
+                    } catch (Exception e) {
+                        throw new AssertionError("put waited for the visitor", e);
+                    }
+                }
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(visited.get()).isGreaterThanOrEqualTo(100);
+        assertThat(new String(store.get("product 100".getBytes()))).isEqualTo("mouse");
+    }
+
+    @Test
+    public void managerCreatesOffHeapCachesFromSpec() {
+        CacheProperty cacheProperty = new CacheProperty();
+        cacheProperty.getCaches().put("product", new CacheProperty.Spec(null, null, null, null, DataSize.ofMegabytes(16)));
+        Cache cache = new TwoTierCacheManager(cacheProperty, null).getCache("product");
+
+        assertThat(cache).isInstanceOf(OffHeapCache.class);
+        cache.put(1L, "keyboard");
+        assertThat(cache.get(1L, String.class)).isEqualTo("keyboard");
+    }
+}
@@ -0,0 +1,224 @@
+package com.kingcjy.cache.config.snapshot;
+
+import com.github.benmanes.caffeine.cache.Policy;
+import com.kingcjy.cache.config.CacheProperty;
+import com.kingcjy.cache.config.offheap.JdkSerializationCodec;
+import com.kingcjy.cache.config.offheap.OffHeapCache;
+import com.kingcjy.cache.config.tier.InMemoryRemoteCacheStore;
+import com.kingcjy.cache.config.tier.TwoTierCacheManager;
+import com.kingcjy.cache.dto.ProductDto;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.cache.Cache;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CacheSnapshotTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<CacheSnapshotter> snapshotters = new ArrayList<>();
+    private CacheProperty cacheProperty;
+
+    @Before
+    public void setUp() {
+        cacheProperty = new CacheProperty();
+        cacheProperty.getSnapshot().setDirectory(folder.getRoot().getPath());
+        cacheProperty.getSnapshot().setInterval(Duration.ofHours(1));
+        cacheProperty.getCaches().put("product", new CacheProperty.Spec(1000L, Duration.ofMinutes(10), null, null, null));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for(CacheSnapshotter snapshotter : snapshotters) {
+            snapshotter.destroy();
+        }
+    }
+
+    @Test
+    public void restoresEntriesLazilyWithWhatIsLeftOfTheirTimeToLive() throws Exception {
+        Cache cache = start().getCache("product");
+        cache.put(1L, new ProductDto(1L, "keyboard", "contents"));
+        cache.put(2L, null);
+        Thread.sleep(50);
+        snapshotters.get(0).snapshotAll();
+        assertThat(Files.exists(folder.getRoot().toPath().resolve("product.snapshot"))).isTrue();
+
+        Cache restored = start().getCache("product");
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> local = nativeCache(restored);
+        assertThat(local.estimatedSize()).isZero();
+
+        assertThat(restored.get(1L, ProductDto.class).getTitle()).isEqualTo("keyboard");
+        assertThat(restored.get(2L)).isNotNull();
+        assertThat(restored.get(2L).get()).isNull();
+        assertThat(restored.get(3L)).isNull();
+        assertThat(local.estimatedSize()).isEqualTo(2);
+
+        Policy.VarExpiration<Object, Object> expiration = local.policy().expireVariably().get();
+        assertThat(expiration.getExpiresAfter(1L, TimeUnit.MILLISECONDS).getAsLong())
+                .isLessThanOrEqualTo(Duration.ofMinutes(10).toMillis() - 50);
+    }
+
+    @Test
+    public void restoredEntriesDoNotOutliveTheTimeToLive() throws Exception {
+        start().getCache("product").put(1L, "keyboard");
+        snapshotters.get(0).snapshotAll();
+
+        cacheProperty.getCaches().get("product").setTimeToLive(Duration.ofMinutes(1));
+        Cache restored = start().getCache("product");
+        assertThat(restored.get(1L, String.class)).isEqualTo("keyboard");
+
+        Policy.VarExpiration<Object, Object> expiration = nativeCache(restored).policy().expireVariably().get();
+        assertThat(expiration.getExpiresAfter(1L, TimeUnit.MILLISECONDS).getAsLong())
+                .isLessThanOrEqualTo(Duration.ofMinutes(1).toMillis());
+    }
+
+    @Test
+    public void skipsExpiredEntries() throws Exception {
+        cacheProperty.getCaches().get("product").setTimeToLive(Duration.ofMillis(100));
+        Cache cache = start().getCache("product");
+        cache.put(1L, "keyboard");
+        snapshotters.get(0).snapshotAll();
+        Thread.sleep(150);
+
+        assertThat(start().getCache("product").get(1L)).isNull();
+    }
+
+    @Test
+    public void writesAndEvictionsTakePrecedenceOverTheSnapshot() {
+        Cache cache = start().getCache("product");
+        cache.put(1L, "keyboard");
+        cache.put(2L, "mouse");
+        snapshotters.get(0).snapshotAll();
+
+        Cache restored = start().getCache("product");
+        restored.put(1L, "monitor");
+        restored.evict(2L);
+        // an entry evicted from the local tier must not come back from the snapshot
+        nativeCache(restored).invalidateAll();
+
+        assertThat(restored.get(1L)).isNull();
+        assertThat(restored.get(2L)).isNull();
+    }
+
+    @Test
+    public void keepsEntriesNotTakenYetInTheNextSnapshot() {
+        Cache cache = start().getCache("product");
+        cache.put(1L, "keyboard");
+        cache.put(2L, "mouse");
+        snapshotters.get(0).snapshotAll();
+
+        Cache restored = start().getCache("product");
+        assertThat(restored.get(1L, String.class)).isEqualTo("keyboard");
+        restored.put(1L, "monitor");
+        snapshotters.get(1).snapshotAll();
+
+        Cache restoredAgain = start().getCache("product");
+        assertThat(restoredAgain.get(1L, String.class)).isEqualTo("monitor");
+        assertThat(restoredAgain.get(2L, String.class)).isEqualTo("mouse");
+    }
+
+    @Test
+    public void restoresOffHeapCaches() {
+        cacheProperty.getCaches().put("product", new CacheProperty.Spec(null, Duration.ofMinutes(10), null, null,
+                DataSize.ofMegabytes(4)));
+        cacheProperty.getOffHeap().setPageSize(DataSize.ofKilobytes(64));
+        Cache cache = start().getCache("product");
+        assertThat(cache).isInstanceOf(OffHeapCache.class);
+        cache.put(1L, new ProductDto(1L, "keyboard", "contents"));
+        cache.put(2L, null);
+        snapshotters.get(0).snapshotAll();
+
+        OffHeapCache restored = (OffHeapCache) start().getCache("product");
+        assertThat(restored.getNativeCache().size()).isZero();
+        assertThat(restored.get(1L, ProductDto.class).getTitle()).isEqualTo("keyboard");
+        assertThat(restored.get(2L).get()).isNull();
+        assertThat(restored.getNativeCache().size()).isEqualTo(2);
+    }
+
+    @Test
+    public void mapsLargeFilesInRegions() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("product.snapshot");
+        try (CacheSnapshotWriter writer = new CacheSnapshotWriter(file)) {
+            for(int i = 0; i < 100; i++) {
+                writer.write(("product " + i).getBytes(StandardCharsets.UTF_8),
+                        ("keyboard " + i).getBytes(StandardCharsets.UTF_8), 0);
+            }
+            writer.commit();
+        }
+
+        // a region holds only a couple of entries, so most of them start a new one
+        CacheSnapshot snapshot = CacheSnapshot.open(file, 64);
+        assertThat(snapshot.size()).isEqualTo(100);
+        for(int i = 0; i < 100; i++) {
+            assertThat(new String(snapshot.take("product " + i).getValue(), StandardCharsets.UTF_8))
+                    .isEqualTo("keyboard " + i);
+        }
+    }
+
+    @Test
+    public void startsEmptyFromAnUnreadableSnapshot() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("product.snapshot");
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+
+        Cache cache = start().getCache("product");
+        assertThat(cache.get(1L)).isNull();
+        cache.put(1L, "keyboard");
+        snapshotters.get(snapshotters.size() - 1).snapshotAll();
+
+        assertThat(start().getCache("product").get(1L, String.class)).isEqualTo("keyboard");
+    }
+
+    @Test
+    public void snapshotsOnShutdown() throws Exception {
+        CacheSnapshotter snapshotter = new CacheSnapshotter(cacheProperty.getSnapshot());
+        new TwoTierCacheManager(cacheProperty, null, null, new JdkSerializationCodec(), snapshotter)
+                .getCache("product").put(1L, "keyboard");
+        snapshotter.destroy();
+
+        assertThat(start().getCache("product").get(1L, String.class)).isEqualTo("keyboard");
+    }
+
+    @Test
+    public void remoteBackedCachesAreNotRestored() {
+        InMemoryRemoteCacheStore remote = new InMemoryRemoteCacheStore();
+        start(remote).getCache("product").put(1L, "keyboard");
+        snapshotters.get(0).snapshotAll();
+
+        // evicted by another node while this one was down
+        new TwoTierCacheManager(cacheProperty, remote).getCache("product").evict(1L);
+
+        assertThat(start(remote).getCache("product").get(1L)).isNull();
+    }
+
+    /**
+     * A manager as a freshly started node creates it, restoring from the snapshot directory.
+     */
+    private TwoTierCacheManager start() {
+        return start(null);
+    }
+
+    private TwoTierCacheManager start(InMemoryRemoteCacheStore remote) {
+        CacheSnapshotter snapshotter = new CacheSnapshotter(cacheProperty.getSnapshot());
+        snapshotters.add(snapshotter);
+        return new TwoTierCacheManager(cacheProperty, remote, null, new JdkSerializationCodec(), snapshotter);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache(Cache cache) {
+        return (com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache();
+    }
+}
@@ -0,0 +1,73 @@
+package com.kingcjy.cache.config.tier;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for a Redis server, so the shared tier can be exercised without one.
+ */
+public class InMemoryRemoteCacheStore implements RemoteCacheStore {
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger gets = new AtomicInteger();
+    private volatile boolean down;
+
+    @Override
+    public byte[] get(String key) {
+        checkUp();
+        gets.incrementAndGet();
+        Entry entry = entries.get(key);
+        if(entry == null || entry.expiresAt < System.nanoTime()) {
+            return null;
+        }
+        return entry.value;
+    }
+
+    @Override
+    public void put(String key, byte[] value, Duration timeToLive) {
+        checkUp();
+        entries.put(key, new Entry(value, System.nanoTime() + timeToLive.toNanos()));
+    }
+
+    @Override
+    public void delete(String key) {
+        checkUp();
+        entries.remove(key);
+    }
+
+    @Override
+    public void deleteByPrefix(String prefix) {
+        checkUp();
+        entries.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    public boolean containsKey(String key) {
+        return entries.containsKey(key);
+    }
+
+    public int getGets() {
+        return gets.get();
+    }
+
+    public void setDown(boolean down) {
+        this.down = down;
+    }
+
+    private void checkUp() {
+        if(down) {
+            throw new IllegalStateException("connection refused");
+        }
+    }
+
+    private static class Entry {
+        private final byte[] value;
+        private final long expiresAt;
+
+        private Entry(byte[] value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.kingcjy.cache.config.tier;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.kingcjy.cache.config.CacheProperty;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RefreshAheadTests {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = nanos::get;
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private CacheRefresher refresher;
+    private TwoTierCache cache;
+
+    @Before
+    public void setUp() {
+        refresher = new CacheRefresher(new CacheProperty.Refresh(), registry);
+        RefreshPolicy refreshPolicy = new RefreshPolicy(Duration.ofSeconds(100), 0.5, Duration.ofSeconds(60));
+        cache = new TwoTierCache("product",
+                Caffeine.newBuilder().ticker(ticker).expireAfterWrite(refreshPolicy.getLocalTimeToLive()).build(),
+                null, Duration.ofHours(1), "cache:", null, refreshPolicy, refresher);
+    }
+
+    @After
+    public void tearDown() {
+        refresher.destroy();
+    }
+
+    @Test
+    public void servesCurrentValueWhileRefreshing() throws Exception {
+        cache.get(1L, () -> "v1");
+        advance(Duration.ofSeconds(40));
+
+        AtomicInteger loads = new AtomicInteger();
+        assertThat(cache.get(1L, () -> {
+            loads.incrementAndGet();
+            return "v2";
+        })).isEqualTo("v1");
+        assertThat(loads).hasValue(0);
+
+        advance(Duration.ofSeconds(20));
+        CountDownLatch release = new CountDownLatch(1);
+        assertThat(cache.get(1L, () -> {
+            loads.incrementAndGet();
+            release.await();
+            return "v2";
+        })).isEqualTo("v1");
+        // a refresh is already in flight
+        assertThat(cache.get(1L, () -> "v3")).isEqualTo("v1");
+        release.countDown();
+
+        awaitRefreshes(1);
+        assertThat(cache.get(1L, () -> "v4")).isEqualTo("v2");
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    public void servesStaleWithinGraceWhenReloadFails() {
+        cache.get(1L, () -> "v1");
+        advance(Duration.ofSeconds(130));
+
+        Callable<String> failing = () -> {
+            throw new IllegalStateException("backend down");
+        };
+        assertThat(cache.get(1L, failing)).isEqualTo("v1");
+        assertThat(cache.get(1L)).as("stale values are not served to plain lookups").isNull();
+        assertThat(registry.get("cache.stale.served").tag("cache", "product").counter().count()).isEqualTo(1);
+
+        advance(Duration.ofSeconds(40));
+        assertThatThrownBy(() -> cache.get(1L, failing)).hasRootCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void reloadsExpiredEntrySynchronously() {
+        cache.get(1L, () -> "v1");
+        advance(Duration.ofSeconds(110));
+
+        assertThat(cache.get(1L, () -> "v2")).isEqualTo("v2");
+        assertThat(registry.find("cache.refresh.result").counter()).isNull();
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+
+    private void awaitRefreshes(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            if(registry.find("cache.refresh.result").tag("result", "success").counter() != null
+                    && registry.get("cache.refresh.result").tag("result", "success").counter().count() >= count) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("refresh did not complete");
+    }
+}
@@ -0,0 +1,183 @@
+package com.kingcjy.cache.config.tier;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.kingcjy.cache.config.CacheProperty;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TwoTierCacheTests {
+
+    private final InMemoryRemoteCacheStore remote = new InMemoryRemoteCacheStore();
+    private TwoTierCacheManager cacheManager;
+
+    @Before
+    public void setUp() {
+        CacheProperty cacheProperty = new CacheProperty();
+        cacheProperty.getCaches().put("product", new CacheProperty.Spec(100L, null, null, null, null));
+        cacheManager = new TwoTierCacheManager(cacheProperty, remote);
+    }
+
+    @Test
+    public void appliesPerCacheSpec() {
+        Cache product = cacheManager.getCache("product");
+        Cache other = cacheManager.getCache("other");
+
+        assertThat(cacheManager.getCacheNames()).containsExactlyInAnyOrder("product", "other");
+        assertThat(nativeCache(product).policy().eviction().get().getMaximum()).isEqualTo(100);
+        product.put(1L, "keyboard");
+        assertThat(nativeCache(product).policy().expireVariably().get().getExpiresAfter(1L).get())
+                .isLessThanOrEqualTo(Duration.ofMinutes(10))
+                .isGreaterThan(Duration.ofMinutes(9));
+        assertThat(nativeCache(other).policy().eviction().get().getMaximum()).isEqualTo(10000);
+    }
+
+    @Test
+    public void evictsBeyondMaximumSize() {
+        Cache product = cacheManager.getCache("product");
+        for(int i = 0; i < 1000; i++) {
+            product.put(i, "product " + i);
+        }
+        nativeCache(product).cleanUp();
+
+        assertThat(nativeCache(product).estimatedSize()).isLessThanOrEqualTo(100);
+    }
+
+    @Test
+    public void promotesRemoteEntriesOnLocalMiss() {
+        Cache product = cacheManager.getCache("product");
+        product.put(1L, "keyboard");
+        assertThat(remote.containsKey("cache:product::1")).isTrue();
+
+        nativeCache(product).invalidateAll();
+        assertThat(product.get(1L, String.class)).isEqualTo("keyboard");
+        assertThat(nativeCache(product).getIfPresent(1L)).isEqualTo("keyboard");
+
+        product.evict(1L);
+        assertThat(product.get(1L)).isNull();
+        assertThat(remote.containsKey("cache:product::1")).isFalse();
+    }
+
+    @Test
+    public void loadsOnceAndCachesNull() {
+        Cache product = cacheManager.getCache("product");
+        AtomicInteger loads = new AtomicInteger();
+        Callable<String> loader = () -> {
+            loads.incrementAndGet();
+            return null;
+        };
+
+        assertThat(product.get(1L, loader)).isNull();
+        assertThat(product.get(1L, loader)).isNull();
+
+        assertThat(loads).hasValue(1);
+        assertThat(product.get(1L)).isNotNull();
+    }
+
+    @Test
+    public void concurrentMissesShareOneLoad() throws Exception {
+        Cache product = cacheManager.getCache("product");
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for(int i = 0; i < 16; i++) {
+                results.add(executor.submit(() -> product.get(1L, () -> {
+                    loads.incrementAndGet();
+                    loading.countDown();
+                    release.await();
+                    return "keyboard";
+                })));
+            }
+            loading.await();
+            // a load in flight must not block other keys
+            assertThat(product.get(2L, () -> "mouse")).isEqualTo("mouse");
+            release.countDown();
+
+            for(Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("keyboard");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    public void loadFinishingAfterEvictIsNotCached() throws Exception {
+        Cache product = cacheManager.getCache("product");
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> result = executor.submit(() -> product.get(1L, () -> {
+                loading.countDown();
+                release.await();
+                return "keyboard";
+            }));
+            loading.await();
+            product.evict(1L);
+            release.countDown();
+
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("keyboard");
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(product.get(1L)).isNull();
+        assertThat(remote.containsKey("cache:product::1")).isFalse();
+    }
+
+    @Test
+    public void failedLoadIsNotCached() {
+        Cache product = cacheManager.getCache("product");
+
+        assertThatThrownBy(() -> product.get(1L, () -> {
+            throw new IllegalStateException("backend down");
+        })).isInstanceOf(Cache.ValueRetrievalException.class).hasRootCauseInstanceOf(IllegalStateException.class);
+        assertThat(product.get(1L, () -> "keyboard")).isEqualTo("keyboard");
+    }
+
+    @Test
+    public void keepsWorkingWhenRemoteIsDown() {
+        Cache product = cacheManager.getCache("product");
+        remote.setDown(true);
+
+        product.put(1L, "keyboard");
+        assertThat(product.get(1L, String.class)).isEqualTo("keyboard");
+        assertThat(product.get(2L, () -> "mouse")).isEqualTo("mouse");
+        product.clear();
+        assertThat(product.get(1L)).isNull();
+    }
+
+    @Test
+    public void localOnlyWithoutRemote() {
+        TwoTierCache cache = new TwoTierCache("local", Caffeine.newBuilder().build(), null, Duration.ofHours(1), "cache:");
+        cache.put(1L, "keyboard");
+
+        assertThat(cache.get(1L, String.class)).isEqualTo("keyboard");
+        assertThat(remote.getGets()).isZero();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache(Cache cache) {
+        return (com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache();
+    }
+}
@@ -0,0 +1,92 @@
+package com.kingcjy.cache.controller;
+
+import com.kingcjy.cache.dto.ProductDto;
+import com.kingcjy.cache.repository.ProductRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+/**
+ * Fires 500 concurrent requests for one product right after its entry expired, and checks that the backend
+ * sees a single call per expiry instead of one per request.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"server.tomcat.max-threads=500", "cache.snapshot.enabled=false"})
+public class ProductControllerLoadTests {
+
+    private static final int CONCURRENT_REQUESTS = 500;
+    private static final int EXPIRIES = 3;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @MockBean
+    private ProductRepository productRepository;
+
+    private final AtomicInteger backendCalls = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        when(productRepository.findById(anyLong())).thenAnswer(invocation -> {
+            backendCalls.incrementAndGet();
+            Thread.sleep(200);
+            Long id = invocation.getArgument(0);
+            return new ProductDto(id, "product " + id, "contents");
+        });
+    }
+
+    @Test
+    public void loadsOncePerExpiryUnderConcurrentRequests() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_REQUESTS);
+        try {
+            for(int expiry = 1; expiry <= EXPIRIES; expiry++) {
+                cacheManager.getCache("product").evict(1L);
+
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<ResponseEntity<Map>>> responses = new ArrayList<>();
+                for(int i = 0; i < CONCURRENT_REQUESTS; i++) {
+                    responses.add(executor.submit(() -> {
+                        start.await();
+                        return restTemplate.getForEntity("/api/products/1", Map.class);
+                    }));
+                }
+                start.countDown();
+
+                for(Future<ResponseEntity<Map>> response : responses) {
+                    ResponseEntity<Map> entity = response.get(30, TimeUnit.SECONDS);
+                    assertThat(entity.getStatusCode()).isEqualTo(HttpStatus.OK);
+                    assertThat(entity.getBody()).containsEntry("title", "product 1");
+                }
+                assertThat(backendCalls).hasValue(expiry);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
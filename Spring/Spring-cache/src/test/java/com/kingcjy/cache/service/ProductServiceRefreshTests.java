@@ -0,0 +1,49 @@
+package com.kingcjy.cache.service;
+
+import com.kingcjy.cache.dto.ProductDto;
+import com.kingcjy.cache.repository.ProductRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "cache.caches.product.time-to-live=2s",
+        "cache.caches.product.refresh-ahead-factor=0.25",
+        "cache.snapshot.enabled=false"
+})
+public class ProductServiceRefreshTests {
+
+    @Autowired
+    private ProductService productService;
+
+    @MockBean
+    private ProductRepository productRepository;
+
+    @Test
+    public void refreshesThroughTheCachedMethod() throws Exception {
+        AtomicInteger version = new AtomicInteger();
+        when(productRepository.findById(anyLong())).thenAnswer(invocation ->
+                new ProductDto(invocation.getArgument(0), "product", "v" + version.incrementAndGet()));
+
+        assertThat(productService.getProduct(1L).getContents()).isEqualTo("v1");
+        Thread.sleep(700);
+        assertThat(productService.getProduct(1L).getContents()).isEqualTo("v1");
+
+        long deadline = System.currentTimeMillis() + 1000;
+        while (version.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+        assertThat(productService.getProduct(1L).getContents()).isEqualTo("v2");
+    }
+}
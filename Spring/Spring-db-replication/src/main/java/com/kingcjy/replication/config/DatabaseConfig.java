@@ -1,11 +1,27 @@
 package com.kingcjy.replication.config;
 
+import com.kingcjy.replication.config.routing.ConnectionTracker;
+import com.kingcjy.replication.config.routing.ReplicaHealthChecker;
+import com.kingcjy.replication.config.routing.ReplicationLagMonitor;
+import com.kingcjy.replication.config.routing.RouteMetrics;
+import com.kingcjy.replication.config.routing.StatementRoutingDataSourceProxy;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.core.config.DefaultConfiguration;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
-import org.springframework.jdbc.datasource.SimpleDriverDataSource;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.orm.jpa.JpaVendorAdapter;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
@@ -13,10 +29,17 @@ import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
+import javax.cache.CacheManager;
+import javax.cache.Caching;
 import javax.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.UUID;
 
 @Configuration
 public class DatabaseConfig {
@@ -27,41 +50,177 @@ public class DatabaseConfig {
     @Autowired
     private JpaProperties jpaProperties;
 
-    public DataSource createDataSource(String url) {
-        SimpleDriverDataSource dataSource = new SimpleDriverDataSource();
-        dataSource.setUrl(url);
-        dataSource.setDriverClass(com.mysql.cj.jdbc.Driver.class);
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    public DataSource createDataSource(String name, String url, DatabaseProperty.Pool pool) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(name);
+        dataSource.setJdbcUrl(url);
+        dataSource.setDriverClassName(databaseProperty.getDriverClassName());
         dataSource.setUsername(databaseProperty.getUsername());
         dataSource.setPassword(databaseProperty.getPassword());
+        // do not fail startup when a node is unreachable, the pool keeps retrying in the background
+        dataSource.setInitializationFailTimeout(-1);
+
+        if(pool.getMaximumPoolSize() != null) {
+            dataSource.setMaximumPoolSize(pool.getMaximumPoolSize());
+        }
+        if(pool.getMinimumIdle() != null) {
+            dataSource.setMinimumIdle(pool.getMinimumIdle());
+        }
+        if(pool.getMaxLifetime() != null) {
+            dataSource.setMaxLifetime(pool.getMaxLifetime().toMillis());
+        }
+        if(pool.getConnectionTimeout() != null) {
+            dataSource.setConnectionTimeout(pool.getConnectionTimeout().toMillis());
+        }
+
+        return dataSource;
+    }
 
+    /**
+     * An unpooled data source for health probes, so a probe opens its own connection instead of waiting on the pool.
+     */
+    public DataSource createProbeDataSource(String url) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url, databaseProperty.getUsername(),
+                databaseProperty.getPassword());
+        dataSource.setDriverClassName(databaseProperty.getDriverClassName());
         return dataSource;
     }
 
+    @Bean
+    public ConnectionTracker connectionTracker() {
+        ConnectionTracker connectionTracker = new ConnectionTracker(databaseProperty.getLatencyDecay().toNanos(),
+                databaseProperty.getBulkhead(), databaseProperty.getCircuitBreaker());
+        if(isMetricsEnabled()) {
+            connectionTracker.setMeterRegistry(meterRegistry);
+        }
+        return connectionTracker;
+    }
+
+    private boolean isMetricsEnabled() {
+        return meterRegistry != null && databaseProperty.getMetrics().isEnabled();
+    }
+
+    @Bean
+    public ReplicaHealthChecker replicaHealthChecker() {
+        return new ReplicaHealthChecker(databaseProperty.getHealthCheck());
+    }
+
+    @Bean
+    public ReplicationLagMonitor replicationLagMonitor() {
+        return new ReplicationLagMonitor(databaseProperty.getConsistency());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "datasource.consistency", name = "read-your-writes", havingValue = "true")
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter() {
+        FilterRegistrationBean<ReadYourWritesFilter> registrationBean = new FilterRegistrationBean<>(
+                new ReadYourWritesFilter(databaseProperty.getConsistency().isSessionScoped()));
+        registrationBean.addUrlPatterns("/*");
+        return registrationBean;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "datasource.metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<NPlusOneDetectionFilter> nPlusOneDetectionFilter() {
+        FilterRegistrationBean<NPlusOneDetectionFilter> registrationBean = new FilterRegistrationBean<>(
+                new NPlusOneDetectionFilter(meterRegistry, databaseProperty.getMetrics().getNPlusOneThreshold()));
+        registrationBean.addUrlPatterns("/*");
+        return registrationBean;
+    }
+
     @Bean
     public DataSource routingDataSource() {
         ReplicationRoutingDataSource replicationRoutingDataSource = new ReplicationRoutingDataSource();
+        ConnectionTracker connectionTracker = connectionTracker();
+        ReplicaHealthChecker replicaHealthChecker = replicaHealthChecker();
+        ReplicationLagMonitor replicationLagMonitor = replicationLagMonitor();
 
-        DataSource master = createDataSource(databaseProperty.getUrl());
+        DataSource master = connectionTracker.track("master",
+                createDataSource("master", databaseProperty.getUrl(), databaseProperty.getPool()));
 
         Map<Object, Object> dataSourceMap = new LinkedHashMap<>();
         dataSourceMap.put("master", master);
 
         databaseProperty.getSlaveList().forEach(slave -> {
-            dataSourceMap.put(slave.getName(), createDataSource(slave.getUrl()));
+            DatabaseProperty.Pool pool = slave.getPool().merge(databaseProperty.getPool());
+            DataSource dataSource = createDataSource(slave.getName(), slave.getUrl(), pool);
+            dataSourceMap.put(slave.getName(), connectionTracker.track(slave.getName(), dataSource));
+            replicaHealthChecker.register(slave.getName(), createProbeDataSource(slave.getUrl()));
+            replicationLagMonitor.register(slave.getName(), dataSource);
         });
 
         replicationRoutingDataSource.setTargetDataSources(dataSourceMap);
         replicationRoutingDataSource.setDefaultTargetDataSource(master);
+        replicationRoutingDataSource.setReplicaSelector(databaseProperty.getStrategy().create(databaseProperty, connectionTracker));
+        replicationRoutingDataSource.setReplicaHealthChecker(replicaHealthChecker);
+        replicationRoutingDataSource.setConnectionTracker(connectionTracker);
+        if(isMetricsEnabled()) {
+            replicationRoutingDataSource.setRouteMetrics(new RouteMetrics(meterRegistry));
+        }
+        if(databaseProperty.getConsistency().isReadYourWrites()) {
+            replicationRoutingDataSource.setReplicationLagMonitor(replicationLagMonitor);
+        }
         return replicationRoutingDataSource;
     }
 
+    @Bean
+    public ReplicaTopologyManager replicaTopologyManager() {
+        return new ReplicaTopologyManager(this, databaseProperty, (ReplicationRoutingDataSource) routingDataSource(),
+                connectionTracker(), replicaHealthChecker(), replicationLagMonitor());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "datasource.topology", name = "file")
+    public ReplicaTopologyFile replicaTopologyFile() {
+        DatabaseProperty.Topology topology = databaseProperty.getTopology();
+        return new ReplicaTopologyFile(Paths.get(topology.getFile()), topology.getCheckInterval(), replicaTopologyManager());
+    }
+
     @Bean
     public DataSource dataSource() {
-        return new LazyConnectionDataSourceProxy(routingDataSource());
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource());
+        if(databaseProperty.isStatementRouting()) {
+            return new StatementRoutingDataSourceProxy(dataSource);
+        }
+        return dataSource;
+    }
+
+    /**
+     * Bounded on-heap regions for the Hibernate second-level and query cache. The update timestamps region
+     * must never expire, otherwise cached query results could outlive the writes that invalidated them.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "datasource.second-level-cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public CacheManager secondLevelCacheManager() {
+        DatabaseProperty.SecondLevelCache secondLevelCache = databaseProperty.getSecondLevelCache();
+        EhcacheCachingProvider cachingProvider =
+                (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        CacheManager cacheManager = cachingProvider.getCacheManager(URI.create("second-level-cache-" + UUID.randomUUID()),
+                new DefaultConfiguration(getClass().getClassLoader()));
+
+        cacheManager.createCache("product",
+                createCacheConfiguration(secondLevelCache.getMaxEntries(), secondLevelCache.getTimeToLive()));
+        cacheManager.createCache("default-query-results-region",
+                createCacheConfiguration(secondLevelCache.getQueryMaxEntries(), secondLevelCache.getQueryTimeToLive()));
+        cacheManager.createCache("default-update-timestamps-region",
+                createCacheConfiguration(secondLevelCache.getTimestampsMaxEntries(), null));
+        return cacheManager;
+    }
+
+    private javax.cache.configuration.Configuration<Object, Object> createCacheConfiguration(long maxEntries, Duration timeToLive) {
+        CacheConfigurationBuilder<Object, Object> builder = CacheConfigurationBuilder.newCacheConfigurationBuilder(
+                Object.class, Object.class, ResourcePoolsBuilder.heap(maxEntries));
+        if(timeToLive != null) {
+            builder = builder.withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(timeToLive));
+        }
+        return Eh107Configuration.fromEhcacheCacheConfiguration(builder);
     }
 
     @Bean
-    public LocalContainerEntityManagerFactoryBean entityManagerFactory() {
+    public LocalContainerEntityManagerFactoryBean entityManagerFactory(ObjectProvider<CacheManager> secondLevelCacheManager) {
         LocalContainerEntityManagerFactoryBean entityManagerFactoryBean = new LocalContainerEntityManagerFactoryBean();
         entityManagerFactoryBean.setDataSource(dataSource());
         entityManagerFactoryBean.setPackagesToScan("com.kingcjy.replication");
@@ -69,7 +228,22 @@ public class DatabaseConfig {
         vendorAdapter.getJpaPropertyMap().put("hibernate.dialect", "org.hibernate.dialect.MySQL5InnoDBDialect");
         entityManagerFactoryBean.setJpaVendorAdapter(vendorAdapter);
 
-        entityManagerFactoryBean.setJpaPropertyMap(jpaProperties.getProperties());
+        Map<String, Object> jpaPropertyMap = new HashMap<>(jpaProperties.getProperties());
+        CacheManager cacheManager = secondLevelCacheManager.getIfAvailable();
+        if(cacheManager != null) {
+            jpaPropertyMap.put("hibernate.cache.use_second_level_cache", "true");
+            jpaPropertyMap.put("hibernate.cache.use_query_cache", "true");
+            jpaPropertyMap.put("hibernate.cache.region.factory_class", "jcache");
+            jpaPropertyMap.put("hibernate.javax.cache.cache_manager", cacheManager);
+            jpaPropertyMap.put("hibernate.javax.cache.missing_cache_strategy", "fail");
+            if(isMetricsEnabled()) {
+                // hit and miss counts are published as hibernate.second.level.cache.* and hibernate.cache.query.* metrics
+                jpaPropertyMap.put("hibernate.generate_statistics", "true");
+                // statistics would otherwise also log a block of session metrics at INFO for every session
+                jpaPropertyMap.put("hibernate.session.events.log", "false");
+            }
+        }
+        entityManagerFactoryBean.setJpaPropertyMap(jpaPropertyMap);
 
         return entityManagerFactoryBean;
     }
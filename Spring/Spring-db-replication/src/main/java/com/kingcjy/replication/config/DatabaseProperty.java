@@ -1,10 +1,13 @@
 package com.kingcjy.replication.config;
 
+import com.kingcjy.replication.config.routing.ReplicaSelectorType;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 
@@ -18,11 +21,166 @@ public class DatabaseProperty {
 
     private String username;
     private String password;
+    private String driverClassName = "com.mysql.cj.jdbc.Driver";
+
+    private Pool pool = new Pool();
+    private HealthCheck healthCheck = new HealthCheck();
+    private Consistency consistency = new Consistency();
+    private Hedge hedge = new Hedge();
+    private Bulkhead bulkhead = new Bulkhead();
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+    private SecondLevelCache secondLevelCache = new SecondLevelCache();
+    private WriteBehind writeBehind = new WriteBehind();
+    private Scan scan = new Scan();
+    private WarmUp warmUp = new WarmUp();
+    private Metrics metrics = new Metrics();
+    private Topology topology = new Topology();
+
+    private ReplicaSelectorType strategy = ReplicaSelectorType.ROUND_ROBIN;
+    private Duration latencyDecay = Duration.ofSeconds(10);
+    private Duration minLatency = Duration.ofMillis(1);
+    private boolean statementRouting = false;
+    private Duration drainTimeout = Duration.ofSeconds(30);
 
     @Getter
     @Setter
     public static class Slave {
         private String name;
         private String url;
+        private int weight = 1;
+        private Pool pool = new Pool();
+    }
+
+    /**
+     * Connection pool settings of a single node. Unset values of a slave fall back to {@code datasource.pool}.
+     */
+    @Getter
+    @Setter
+    @EqualsAndHashCode
+    public static class Pool {
+        private Integer maximumPoolSize;
+        private Integer minimumIdle;
+        private Duration maxLifetime;
+        private Duration connectionTimeout;
+
+        public Pool merge(Pool defaults) {
+            Pool pool = new Pool();
+            pool.setMaximumPoolSize(maximumPoolSize != null ? maximumPoolSize : defaults.getMaximumPoolSize());
+            pool.setMinimumIdle(minimumIdle != null ? minimumIdle : defaults.getMinimumIdle());
+            pool.setMaxLifetime(maxLifetime != null ? maxLifetime : defaults.getMaxLifetime());
+            pool.setConnectionTimeout(connectionTimeout != null ? connectionTimeout : defaults.getConnectionTimeout());
+            return pool;
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class HealthCheck {
+        private boolean enabled = true;
+        private Duration interval = Duration.ofSeconds(5);
+        private Duration timeout = Duration.ofSeconds(2);
+        private int failureThreshold = 2;
+        private int successThreshold = 3;
+        private int poolSize = 4;
+    }
+
+    @Getter
+    @Setter
+    public static class Consistency {
+        private boolean readYourWrites = false;
+        private boolean sessionScoped = true;
+        private Duration lagCheckInterval = Duration.ofSeconds(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Hedge {
+        private boolean enabled = false;
+        private double percentile = 0.95;
+        private int window = 1024;
+        private Duration minDelay = Duration.ofMillis(10);
+        private double budget = 0.1;
+        private int maxBurst = 10;
+        private int poolSize = 16;
+    }
+
+    @Getter
+    @Setter
+    public static class Bulkhead {
+        private int maxConcurrent = 0;
+        private Duration maxWait = Duration.ofMillis(100);
+    }
+
+    @Getter
+    @Setter
+    public static class CircuitBreaker {
+        private boolean enabled = true;
+        private int window = 100;
+        private int minimumCalls = 20;
+        private double failureRateThreshold = 0.5;
+        private Duration slowCallDuration = Duration.ofSeconds(3);
+        private Duration openDuration = Duration.ofSeconds(10);
+        private int halfOpenCalls = 5;
+    }
+
+    /**
+     * Hibernate second-level cache regions. Entries loaded from a lagging replica, or updated by another instance,
+     * can be stale for up to the time to live.
+     */
+    @Getter
+    @Setter
+    public static class SecondLevelCache {
+        private boolean enabled = true;
+        private Duration timeToLive = Duration.ofMinutes(10);
+        private long maxEntries = 10000;
+        private Duration queryTimeToLive = Duration.ofMinutes(1);
+        private long queryMaxEntries = 1000;
+        private long timestampsMaxEntries = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class WriteBehind {
+        private boolean enabled = false;
+        private Duration window = Duration.ofMillis(100);
+        private int maxPending = 10000;
+    }
+
+    @Getter
+    @Setter
+    public static class Scan {
+        private long sliceSize = 10000;
+        private int poolSize = 8;
+    }
+
+    @Getter
+    @Setter
+    public static class WarmUp {
+        private boolean enabled = true;
+        private int connections = 2;
+        private int queryIterations = 200;
+        private int requestIterations = 100;
+    }
+
+    /**
+     * An external file, YAML or properties, holding {@code datasource.slave-list}. It is checked every
+     * {@code checkInterval} and the replica set is replaced by its list whenever the file changes.
+     */
+    @Getter
+    @Setter
+    public static class Topology {
+        private String file;
+        private Duration checkInterval = Duration.ofSeconds(10);
+    }
+
+    /**
+     * Per target JDBC meters and N+1 detection. A request executing the same SQL string
+     * {@code nPlusOneThreshold} times or more is reported.
+     */
+    @Getter
+    @Setter
+    public static class Metrics {
+        private boolean enabled = true;
+        private int nPlusOneThreshold = 10;
     }
 }
@@ -0,0 +1,63 @@
+package com.kingcjy.replication.config;
+
+import com.kingcjy.replication.config.routing.StatementRecorder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Records the statements executed while handling a request and reports every SQL string executed
+ * {@code threshold} times or more, which is almost always a lazy association loaded one row at a time.
+ * Reports are logged and counted as {@code replication.n_plus_one}, tagged with the handler's URI pattern.
+ */
+@Slf4j
+public class NPlusOneDetectionFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry meterRegistry;
+    private final int threshold;
+
+    public NPlusOneDetectionFilter(MeterRegistry meterRegistry, int threshold) {
+        this.meterRegistry = meterRegistry;
+        this.threshold = threshold;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        StatementRecorder.begin();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            report(request, StatementRecorder.end());
+        }
+    }
+
+    void report(HttpServletRequest request, Map<String, Integer> statements) {
+        for(Map.Entry<String, Integer> statement : statements.entrySet()) {
+            if(statement.getValue() < threshold) {
+                continue;
+            }
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+            log.warn("possible N+1 query on {} {}: executed {} times: {}",
+                    request.getMethod(), request.getRequestURI(), statement.getValue(), statement.getKey());
+            if(meterRegistry != null) {
+                Counter.builder("replication.n_plus_one")
+                        .description("Requests that executed the same statement at least the threshold number of times")
+                        .tag("method", request.getMethod())
+                        .tag("uri", uri)
+                        .register(meterRegistry)
+                        .increment();
+            }
+        }
+    }
+}
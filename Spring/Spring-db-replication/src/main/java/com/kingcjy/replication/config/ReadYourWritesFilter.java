@@ -0,0 +1,133 @@
+package com.kingcjy.replication.config;
+
+import com.kingcjy.replication.config.routing.WritePositionHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Carries the last write position of a client across requests in a cookie,
+ * so that a read following a write from the same client does not hit a replica that is behind.
+ * No HTTP session is created. A client can only raise its own position, which sends its reads to master.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String WRITE_POSITION_COOKIE = "write-position";
+
+    private final boolean sessionScoped;
+
+    public ReadYourWritesFilter(boolean sessionScoped) {
+        this.sessionScoped = sessionScoped;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long restored = 0;
+        if(sessionScoped) {
+            restored = restore(request);
+        }
+
+        WritePositionHolder.set(restored);
+        WritePositionResponse wrapped = sessionScoped ? new WritePositionResponse(response, restored) : null;
+        try {
+            filterChain.doFilter(request, wrapped != null ? wrapped : response);
+        } finally {
+            if(wrapped != null) {
+                wrapped.addCookieIfMoved();
+            }
+            WritePositionHolder.clear();
+        }
+    }
+
+    private static long restore(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if(cookies == null) {
+            return 0;
+        }
+        for(Cookie cookie : cookies) {
+            if(WRITE_POSITION_COOKIE.equals(cookie.getName())) {
+                try {
+                    return Math.max(0, Long.parseLong(cookie.getValue()));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Adds the cookie before the response commits: a message converter writes and flushes the body before the
+     * filter chain returns, after which headers can no longer be set. Only the request thread is checked, the
+     * position is not carried to threads of an async request.
+     */
+    private static class WritePositionResponse extends HttpServletResponseWrapper {
+
+        private final Thread requestThread = Thread.currentThread();
+        private long sent;
+
+        private WritePositionResponse(HttpServletResponse response, long restored) {
+            super(response);
+            this.sent = restored;
+        }
+
+        private void addCookieIfMoved() {
+            if(Thread.currentThread() != requestThread || isCommitted()) {
+                return;
+            }
+            long position = WritePositionHolder.get();
+            if(position != sent) {
+                sent = position;
+                Cookie cookie = new Cookie(WRITE_POSITION_COOKIE, Long.toString(position));
+                cookie.setPath("/");
+                cookie.setHttpOnly(true);
+                addCookie(cookie);
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            addCookieIfMoved();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            addCookieIfMoved();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            addCookieIfMoved();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            addCookieIfMoved();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            addCookieIfMoved();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            addCookieIfMoved();
+            super.sendRedirect(location);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.kingcjy.replication.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reloads the replica set from the {@link ReplicaTopologyFile} right away, instead of at its next check. The topology
+ * only ever comes from that file, and like every actuator endpoint this one is only reachable over HTTP once it is
+ * exposed under {@code management.endpoints.web.exposure}, which should go together with securing the actuator.
+ */
+@Component
+@Endpoint(id = "replicas")
+public class ReplicaTopologyEndpoint {
+
+    @Autowired
+    private DatabaseProperty databaseProperty;
+    @Autowired(required = false)
+    private ReplicaTopologyFile replicaTopologyFile;
+
+    @ReadOperation
+    public Map<String, Integer> replicas() {
+        return weights(databaseProperty.getSlaveList());
+    }
+
+    @WriteOperation
+    public Map<String, Integer> reload() throws IOException, SQLException {
+        if(replicaTopologyFile == null) {
+            throw new IllegalStateException("datasource.topology.file is not configured, the replica set is fixed");
+        }
+        return weights(replicaTopologyFile.reload());
+    }
+
+    private Map<String, Integer> weights(List<DatabaseProperty.Slave> slaveList) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        slaveList.forEach(slave -> weights.put(slave.getName(), slave.getWeight()));
+        return weights;
+    }
+}
@@ -0,0 +1,100 @@
+package com.kingcjy.replication.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.PropertiesPropertySourceLoader;
+import org.springframework.boot.env.PropertySourceLoader;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the file named by {@code datasource.topology.file} and applies its {@code datasource.slave-list} through
+ * the {@link ReplicaTopologyManager} whenever the file changes, so replicas are added and removed without a restart.
+ * Only the replica list is taken from the file; every other datasource setting keeps its startup value.
+ * A file that can not be read or holds an invalid list is logged and ignored until it changes again.
+ */
+@Slf4j
+public class ReplicaTopologyFile implements InitializingBean, DisposableBean {
+
+    private final Path file;
+    private final Duration checkInterval;
+    private final ReplicaTopologyManager replicaTopologyManager;
+
+    private ScheduledExecutorService scheduler;
+    private FileTime lastModified;
+    private long lastSize = -1;
+
+    public ReplicaTopologyFile(Path file, Duration checkInterval, ReplicaTopologyManager replicaTopologyManager) {
+        this.file = file;
+        this.checkInterval = checkInterval;
+        this.replicaTopologyManager = replicaTopologyManager;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("replica-topology-");
+        threadFactory.setDaemon(true);
+        scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long interval = checkInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::check, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if(scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Applies the file now, whether or not it changed since the last check.
+     */
+    public synchronized List<DatabaseProperty.Slave> reload() throws IOException, SQLException {
+        lastModified = Files.getLastModifiedTime(file);
+        lastSize = Files.size(file);
+        return replicaTopologyManager.refresh(load());
+    }
+
+    private synchronized void check() {
+        try {
+            if(!Files.exists(file)) {
+                return;
+            }
+            if(Files.getLastModifiedTime(file).equals(lastModified) && Files.size(file) == lastSize) {
+                return;
+            }
+            List<DatabaseProperty.Slave> slaveList = reload();
+            log.info("replica topology reloaded from {}: {} replicas", file, slaveList.size());
+        } catch (IOException | SQLException | RuntimeException e) {
+            log.warn("could not apply replica topology from {}", file, e);
+        }
+    }
+
+    private List<DatabaseProperty.Slave> load() throws IOException {
+        PropertySourceLoader loader = file.getFileName().toString().endsWith(".properties")
+                ? new PropertiesPropertySourceLoader()
+                : new YamlPropertySourceLoader();
+        List<PropertySource<?>> sources = loader.load(file.toString(), new FileSystemResource(file.toFile()));
+        // a file without the list is more likely cut short than meant to remove every replica
+        return new Binder(ConfigurationPropertySources.from(sources))
+                .bind("datasource.slave-list", Bindable.listOf(DatabaseProperty.Slave.class))
+                .orElseThrow(() -> new IllegalStateException(file + " has no datasource.slave-list"));
+    }
+}
@@ -0,0 +1,186 @@
+package com.kingcjy.replication.config;
+
+import com.kingcjy.replication.config.routing.ConnectionTracker;
+import com.kingcjy.replication.config.routing.ReplicaHealthChecker;
+import com.kingcjy.replication.config.routing.ReplicationLagMonitor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies a new replica set to the running {@link ReplicationRoutingDataSource}.
+ * Added replicas get their pool filled and validated before they are published for routing,
+ * removed replicas are unpublished first and their pool is only closed once in-flight connections are returned.
+ * A replica set that is not valid as a whole is rejected before anything changes.
+ */
+@Slf4j
+public class ReplicaTopologyManager implements DisposableBean {
+
+    private final DatabaseConfig databaseConfig;
+    private final DatabaseProperty databaseProperty;
+    private final ReplicationRoutingDataSource routingDataSource;
+    private final ConnectionTracker connectionTracker;
+    private final ReplicaHealthChecker replicaHealthChecker;
+    private final ReplicationLagMonitor replicationLagMonitor;
+
+    private final ExecutorService drainer;
+
+    public ReplicaTopologyManager(DatabaseConfig databaseConfig, DatabaseProperty databaseProperty,
+                                  ReplicationRoutingDataSource routingDataSource, ConnectionTracker connectionTracker,
+                                  ReplicaHealthChecker replicaHealthChecker, ReplicationLagMonitor replicationLagMonitor) {
+        this.databaseConfig = databaseConfig;
+        this.databaseProperty = databaseProperty;
+        this.routingDataSource = routingDataSource;
+        this.connectionTracker = connectionTracker;
+        this.replicaHealthChecker = replicaHealthChecker;
+        this.replicationLagMonitor = replicationLagMonitor;
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("replica-drain-");
+        threadFactory.setDaemon(true);
+        this.drainer = Executors.newCachedThreadPool(threadFactory);
+    }
+
+    public synchronized List<DatabaseProperty.Slave> refresh(List<DatabaseProperty.Slave> slaveList) throws SQLException {
+        validate(slaveList);
+        Map<String, DatabaseProperty.Slave> current = new LinkedHashMap<>();
+        databaseProperty.getSlaveList().forEach(slave -> current.put(slave.getName(), slave));
+        Map<String, DatabaseProperty.Slave> next = new LinkedHashMap<>();
+        slaveList.forEach(slave -> next.put(slave.getName(), slave));
+
+        List<DatabaseProperty.Slave> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        next.forEach((name, slave) -> {
+            DatabaseProperty.Slave previous = current.get(name);
+            if(previous == null || !sameNode(previous, slave)) {
+                added.add(slave);
+            }
+        });
+        current.forEach((name, slave) -> {
+            if(!next.containsKey(name) || !sameNode(slave, next.get(name))) {
+                removed.add(name);
+            }
+        });
+
+        Map<String, DataSource> warmed = new LinkedHashMap<>();
+        try {
+            for(DatabaseProperty.Slave slave : added) {
+                DatabaseProperty.Pool pool = slave.getPool().merge(databaseProperty.getPool());
+                DataSource dataSource = databaseConfig.createDataSource(slave.getName(), slave.getUrl(), pool);
+                warmed.put(slave.getName(), dataSource);
+                warmUp(dataSource, pool);
+            }
+        } catch (SQLException | RuntimeException e) {
+            for(DataSource dataSource : warmed.values()) {
+                closeQuietly(dataSource);
+            }
+            throw e;
+        }
+
+        for(String name : removed) {
+            replicaHealthChecker.unregister(name);
+            replicationLagMonitor.unregister(name);
+            connectionTracker.untrack(name);
+            DataSource dataSource = routingDataSource.removeReplica(name);
+            if(dataSource != null) {
+                drainer.execute(() -> drain(name, dataSource));
+            }
+        }
+
+        databaseProperty.setSlaveList(new ArrayList<>(slaveList));
+
+        warmed.forEach((name, dataSource) -> {
+            routingDataSource.addReplica(name, connectionTracker.track(name, dataSource));
+            replicationLagMonitor.register(name, dataSource);
+            replicaHealthChecker.register(name, databaseConfig.createProbeDataSource(next.get(name).getUrl()));
+            log.info("replica {} added to rotation", name);
+        });
+        replicaHealthChecker.publish();
+
+        return databaseProperty.getSlaveList();
+    }
+
+    @Override
+    public void destroy() {
+        drainer.shutdownNow();
+    }
+
+    private void validate(List<DatabaseProperty.Slave> slaveList) {
+        Set<String> names = new HashSet<>();
+        for(DatabaseProperty.Slave slave : slaveList) {
+            String name = slave.getName();
+            if(name == null || name.trim().isEmpty() || "master".equals(name)) {
+                throw new IllegalArgumentException("replica name must be set and must not be master: " + name);
+            }
+            if(!names.add(name)) {
+                throw new IllegalArgumentException("replica " + name + " is listed twice");
+            }
+            if(slave.getUrl() == null || !slave.getUrl().startsWith("jdbc:")) {
+                throw new IllegalArgumentException("replica " + name + " needs a jdbc url");
+            }
+            if(slave.getWeight() < 0) {
+                throw new IllegalArgumentException("replica " + name + " has a negative weight");
+            }
+        }
+    }
+
+    private void warmUp(DataSource dataSource, DatabaseProperty.Pool pool) throws SQLException {
+        int connections = pool.getMinimumIdle() != null ? Math.max(1, pool.getMinimumIdle()) : 1;
+        List<Connection> opened = new ArrayList<>();
+        try {
+            for(int i = 0; i < connections; i++) {
+                Connection connection = dataSource.getConnection();
+                opened.add(connection);
+                if(!connection.isValid((int) Math.max(1, databaseProperty.getHealthCheck().getTimeout().getSeconds()))) {
+                    throw new SQLException("connection validation failed while warming up");
+                }
+            }
+        } finally {
+            for(Connection connection : opened) {
+                connection.close();
+            }
+        }
+    }
+
+    private void drain(String name, DataSource dataSource) {
+        long deadline = System.nanoTime() + databaseProperty.getDrainTimeout().toNanos();
+        try {
+            while(connectionTracker.getOutstanding(dataSource) > 0 && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if(connectionTracker.getOutstanding(dataSource) > 0) {
+            log.warn("replica {} still has {} connections in use after the drain timeout, closing it anyway",
+                    name, connectionTracker.getOutstanding(dataSource));
+        }
+        closeQuietly(dataSource);
+        log.info("replica {} drained and removed", name);
+    }
+
+    private boolean sameNode(DatabaseProperty.Slave a, DatabaseProperty.Slave b) {
+        return Objects.equals(a.getUrl(), b.getUrl()) && a.getPool().equals(b.getPool());
+    }
+
+    private void closeQuietly(DataSource dataSource) {
+        try {
+            ReplicationRoutingDataSource.close(dataSource);
+        } catch (Exception e) {
+            log.warn("failed to close data source", e);
+        }
+    }
+}
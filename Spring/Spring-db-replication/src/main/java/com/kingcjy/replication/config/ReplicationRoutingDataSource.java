@@ -1,36 +1,205 @@
 package com.kingcjy.replication.config;
 
-import com.kingcjy.replication.util.CircularList;
+import com.kingcjy.replication.config.routing.ConnectionTracker;
+import com.kingcjy.replication.config.routing.ReplicaContextHolder;
+import com.kingcjy.replication.config.routing.ReplicaHealthChecker;
+import com.kingcjy.replication.config.routing.ReplicaSelector;
+import com.kingcjy.replication.config.routing.ReplicationLagMonitor;
+import com.kingcjy.replication.config.routing.RoundRobinReplicaSelector;
+import com.kingcjy.replication.config.routing.RouteMetrics;
+import com.kingcjy.replication.config.routing.StatementRoutingDataSourceProxy;
+import com.kingcjy.replication.config.routing.WritePositionHolder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
 import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
-public class ReplicationRoutingDataSource extends AbstractRoutingDataSource {
+/**
+ * Targets are kept in immutable snapshots that are swapped on {@link #addReplica} and {@link #removeReplica},
+ * so the replica set can change at runtime while routing only performs volatile reads.
+ */
+public class ReplicationRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
 
-    private CircularList<String> dataSourceNameList;
+    private final Object topologyMonitor = new Object();
+
+    private volatile Map<String, DataSource> dataSources = Collections.emptyMap();
+    private volatile List<String> dataSourceNameList = Collections.emptyList();
+
+    private ReplicaSelector replicaSelector = new RoundRobinReplicaSelector();
+    private ReplicaHealthChecker replicaHealthChecker;
+    private ReplicationLagMonitor replicationLagMonitor;
+    private ConnectionTracker connectionTracker;
+    private RouteMetrics routeMetrics;
 
     @Override
     public void setTargetDataSources(Map<Object, Object> targetDataSources) {
         super.setTargetDataSources(targetDataSources);
 
-        dataSourceNameList = new CircularList<>(
-                targetDataSources.keySet()
-                        .stream()
-                        .filter(key -> key.toString().contains("slave"))
-                        .map(key -> key.toString())
-                        .collect(Collectors.toList())
-        );
+        synchronized (topologyMonitor) {
+            Map<String, DataSource> snapshot = new LinkedHashMap<>();
+            targetDataSources.forEach((key, dataSource) -> snapshot.put(key.toString(), (DataSource) dataSource));
+            dataSources = Collections.unmodifiableMap(snapshot);
+
+            dataSourceNameList = Collections.unmodifiableList(
+                    targetDataSources.keySet()
+                            .stream()
+                            .filter(key -> key.toString().contains("slave"))
+                            .map(key -> key.toString())
+                            .collect(Collectors.toList())
+            );
+        }
+    }
+
+    public void addReplica(String key, DataSource dataSource) {
+        synchronized (topologyMonitor) {
+            Map<String, DataSource> snapshot = new LinkedHashMap<>(dataSources);
+            snapshot.put(key, dataSource);
+            List<String> names = new ArrayList<>(dataSourceNameList);
+            if(!names.contains(key)) {
+                names.add(key);
+            }
+            dataSources = Collections.unmodifiableMap(snapshot);
+            dataSourceNameList = Collections.unmodifiableList(names);
+        }
+    }
+
+    public DataSource removeReplica(String key) {
+        synchronized (topologyMonitor) {
+            Map<String, DataSource> snapshot = new LinkedHashMap<>(dataSources);
+            DataSource removed = snapshot.remove(key);
+            List<String> names = new ArrayList<>(dataSourceNameList);
+            names.remove(key);
+            dataSourceNameList = Collections.unmodifiableList(names);
+            dataSources = Collections.unmodifiableMap(snapshot);
+            return removed;
+        }
+    }
+
+    public List<String> getReplicas() {
+        return dataSourceNameList;
+    }
+
+    public DataSource getDataSource(String key) {
+        return dataSources.get(key);
+    }
+
+    public void setReplicaSelector(ReplicaSelector replicaSelector) {
+        this.replicaSelector = replicaSelector;
+    }
+
+    public void setReplicaHealthChecker(ReplicaHealthChecker replicaHealthChecker) {
+        this.replicaHealthChecker = replicaHealthChecker;
+    }
+
+    public void setReplicationLagMonitor(ReplicationLagMonitor replicationLagMonitor) {
+        this.replicationLagMonitor = replicationLagMonitor;
+    }
+
+    public void setConnectionTracker(ConnectionTracker connectionTracker) {
+        this.connectionTracker = connectionTracker;
+    }
+
+    public void setRouteMetrics(RouteMetrics routeMetrics) {
+        this.routeMetrics = routeMetrics;
+    }
+
+    @Override
+    protected DataSource determineTargetDataSource() {
+        Map<String, DataSource> current = dataSources;
+        DataSource dataSource = current.get(determineCurrentLookupKey());
+        return dataSource != null ? dataSource : current.get("master");
     }
 
     @Override
     protected Object determineCurrentLookupKey() {
-        boolean isReadOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        boolean isReadOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || StatementRoutingDataSourceProxy.isCurrentStatementReadOnly();
         if(isReadOnly) {
-            return dataSourceNameList.getOne();
-        } else {
-            return "master";
+            String pinned = ReplicaContextHolder.getReplica();
+            if(pinned != null && dataSources.containsKey(pinned)) {
+                return route(pinned, RouteMetrics.Reason.PINNED);
+            }
+            String slave = replicaSelector.select(getRoutableReplicas());
+            if(slave != null) {
+                return route(slave, RouteMetrics.Reason.SELECTED);
+            }
+            return route("master", RouteMetrics.Reason.FALLBACK);
+        } else if(replicationLagMonitor != null) {
+            trackWritePosition();
+        }
+        return route("master", RouteMetrics.Reason.WRITE);
+    }
+
+    private String route(String key, RouteMetrics.Reason reason) {
+        if(routeMetrics != null) {
+            routeMetrics.record(key, reason);
+        }
+        return key;
+    }
+
+    /**
+     * @return the replicas a read-only transaction on the current thread may be routed to
+     */
+    public List<String> getRoutableReplicas() {
+        List<String> replicas = replicaHealthChecker != null
+                ? replicaHealthChecker.getHealthyReplicas()
+                : dataSourceNameList;
+        long writePosition = WritePositionHolder.get();
+        if(replicationLagMonitor != null && writePosition != 0) {
+            replicas = replicationLagMonitor.caughtUp(replicas, writePosition);
+        }
+        if(connectionTracker != null) {
+            replicas = connectionTracker.available(replicas);
+        }
+        return replicas;
+    }
+
+    public String selectReplica() {
+        return replicaSelector.select(getRoutableReplicas());
+    }
+
+    private void trackWritePosition() {
+        if(!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                WritePositionHolder.set(System.currentTimeMillis());
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(ReplicationRoutingDataSource.this);
+            }
+        });
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for(DataSource dataSource : dataSources.values()) {
+            close(dataSource);
+        }
+    }
+
+    public static void close(DataSource dataSource) throws Exception {
+        DataSource target = dataSource;
+        while(target instanceof DelegatingDataSource) {
+            target = ((DelegatingDataSource) target).getTargetDataSource();
+        }
+        if(target instanceof AutoCloseable) {
+            ((AutoCloseable) target).close();
         }
     }
 }
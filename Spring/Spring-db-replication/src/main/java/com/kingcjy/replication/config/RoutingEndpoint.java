@@ -0,0 +1,54 @@
+package com.kingcjy.replication.config;
+
+import com.kingcjy.replication.config.routing.ConnectionTracker;
+import com.kingcjy.replication.config.routing.ReplicaHealthChecker;
+import com.kingcjy.replication.config.routing.TargetCircuitBreaker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Component
+@Endpoint(id = "routing")
+public class RoutingEndpoint {
+
+    @Autowired
+    private ConnectionTracker connectionTracker;
+    @Autowired
+    private ReplicaHealthChecker replicaHealthChecker;
+
+    @ReadOperation
+    public Map<String, Object> routing() {
+        Map<String, Object> targets = new TreeMap<>();
+        connectionTracker.getTargets().forEach((key, target) -> {
+            Map<String, Object> bulkhead = new LinkedHashMap<>();
+            bulkhead.put("maxConcurrent", target.getBulkhead().getMaxConcurrent());
+            bulkhead.put("available", target.getBulkhead().getAvailable());
+
+            Map<String, Object> details = new LinkedHashMap<>();
+            details.put("outstanding", target.getOutstanding());
+            details.put("latencyMillis", target.getLatencyMillis());
+            details.put("bulkhead", bulkhead);
+
+            TargetCircuitBreaker circuitBreaker = target.getCircuitBreaker();
+            if(circuitBreaker != null) {
+                Map<String, Object> breaker = new LinkedHashMap<>();
+                breaker.put("state", circuitBreaker.getState());
+                breaker.put("failureRate", circuitBreaker.getFailureRate());
+                breaker.put("calls", circuitBreaker.getCalls());
+                details.put("circuitBreaker", breaker);
+                details.put("healthy", replicaHealthChecker.isHealthy(key));
+            }
+            targets.put(key, details);
+        });
+
+        Map<String, Object> routing = new LinkedHashMap<>();
+        routing.put("healthyReplicas", replicaHealthChecker.getHealthyReplicas());
+        routing.put("targets", targets);
+        return routing;
+    }
+}
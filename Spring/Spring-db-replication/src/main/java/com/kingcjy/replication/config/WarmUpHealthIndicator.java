@@ -0,0 +1,27 @@
+package com.kingcjy.replication.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps {@code /actuator/health} out of service until the warm-up has finished, so load balancers hold traffic back.
+ */
+@Component
+public class WarmUpHealthIndicator extends AbstractHealthIndicator {
+
+    @Autowired
+    private WarmUpRunner warmUpRunner;
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        if(!warmUpRunner.isDone()) {
+            builder.outOfService();
+            return;
+        }
+        builder.up()
+                .withDetail("failures", warmUpRunner.getFailures())
+                .withDetail("millis", warmUpRunner.getPhaseMillis());
+    }
+}
@@ -0,0 +1,196 @@
+package com.kingcjy.replication.config;
+
+import com.kingcjy.replication.config.routing.ReplicaContextHolder;
+import com.kingcjy.replication.entity.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.RestTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Warms the application up once it has started: opens connections to master and every replica,
+ * runs the common product queries against each of them and calls the product endpoints over HTTP,
+ * so the first real requests do not pay for pool setup, Hibernate and Spring MVC initialization or cold JIT.
+ * {@link WarmUpHealthIndicator} reports {@code OUT_OF_SERVICE} until it has finished.
+ */
+@Slf4j
+@Component
+public class WarmUpRunner implements ApplicationListener<ApplicationReadyEvent>, DisposableBean {
+
+    @Autowired
+    private DatabaseProperty databaseProperty;
+    @Autowired
+    @Qualifier("routingDataSource")
+    private DataSource routingDataSource;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ProductRepository productRepository;
+
+    private final Map<String, Long> phaseMillis = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile boolean done;
+
+    private ExecutorService executor;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if(!databaseProperty.getWarmUp().isEnabled()) {
+            done = true;
+            return;
+        }
+        Integer port = event.getApplicationContext() instanceof WebServerApplicationContext
+                ? ((WebServerApplicationContext) event.getApplicationContext()).getWebServer().getPort()
+                : null;
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("warm-up-");
+        threadFactory.setDaemon(true);
+        executor = Executors.newSingleThreadExecutor(threadFactory);
+        executor.execute(() -> warmUp(port));
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public int getFailures() {
+        return failures.get();
+    }
+
+    public Map<String, Long> getPhaseMillis() {
+        synchronized (phaseMillis) {
+            return new LinkedHashMap<>(phaseMillis);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if(executor != null) {
+            executor.shutdownNow();
+            try {
+                // the warm-up uses the data sources, let it stop before they are closed
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void warmUp(Integer port) {
+        ReplicationRoutingDataSource dataSource = (ReplicationRoutingDataSource) routingDataSource;
+        List<String> targets = new ArrayList<>();
+        targets.add("master");
+        targets.addAll(dataSource.getReplicas());
+
+        long start = System.nanoTime();
+        try {
+            phase("connections", () -> targets.forEach(key -> openConnections(key, dataSource.getDataSource(key))));
+            phase("queries", () -> targets.forEach(this::runQueries));
+            if(port != null && port > 0) {
+                phase("requests", () -> sendRequests(port));
+            }
+        } finally {
+            phaseMillis.put("total", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            done = true;
+            log.info("Warm-up finished in {} ms with {} failure(s): {}", phaseMillis.get("total"), failures.get(), getPhaseMillis());
+        }
+    }
+
+    private void phase(String name, Runnable phase) {
+        long start = System.nanoTime();
+        phase.run();
+        phaseMillis.put(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void openConnections(String key, DataSource dataSource) {
+        if(dataSource == null) {
+            return;
+        }
+        List<Connection> connections = new ArrayList<>();
+        try {
+            for(int i = 0; i < databaseProperty.getWarmUp().getConnections() && !stopped(); i++) {
+                Connection connection = dataSource.getConnection();
+                connections.add(connection);
+                connection.isValid(1);
+            }
+        } catch (SQLException e) {
+            failed(key, e);
+        } finally {
+            for(Connection connection : connections) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    log.debug("Failed to close warm-up connection of {}", key, e);
+                }
+            }
+        }
+    }
+
+    private void runQueries(String key) {
+        boolean master = "master".equals(key);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(!master);
+        if(!master) {
+            ReplicaContextHolder.setReplica(key);
+        }
+        try {
+            for(int i = 0; i < databaseProperty.getWarmUp().getQueryIterations() && !stopped(); i++) {
+                transactionTemplate.execute(status -> {
+                    long maxId = productRepository.findMaxId();
+                    productRepository.findById(maxId);
+                    return productRepository.findProductsAfter(0L, PageRequest.of(0, 20));
+                });
+            }
+        } catch (RuntimeException e) {
+            failed(key, e);
+        } finally {
+            ReplicaContextHolder.clear();
+        }
+    }
+
+    private void sendRequests(int port) {
+        RestTemplate restTemplate = new RestTemplate();
+        String url = "http://localhost:" + port + "/api/products/page?size=20";
+        try {
+            for(int i = 0; i < databaseProperty.getWarmUp().getRequestIterations() && !stopped(); i++) {
+                restTemplate.getForObject(url, String.class);
+            }
+        } catch (RuntimeException e) {
+            failed("requests", e);
+        }
+    }
+
+    private boolean stopped() {
+        return Thread.currentThread().isInterrupted();
+    }
+
+    private void failed(String phase, Exception e) {
+        if(stopped()) {
+            return;
+        }
+        failures.incrementAndGet();
+        log.warn("Warm-up of {} failed: {}", phase, e.toString());
+    }
+}
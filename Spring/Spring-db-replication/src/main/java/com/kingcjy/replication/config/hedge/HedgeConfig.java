@@ -0,0 +1,32 @@
+package com.kingcjy.replication.config.hedge;
+
+import com.kingcjy.replication.config.DatabaseProperty;
+import com.kingcjy.replication.config.ReplicationRoutingDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+
+@Configuration
+@ConditionalOnProperty(prefix = "datasource.hedge", name = "enabled", havingValue = "true")
+public class HedgeConfig {
+
+    @Autowired
+    private DatabaseProperty databaseProperty;
+
+    @Bean
+    public HedgedReadTemplate hedgedReadTemplate(@Qualifier("routingDataSource") DataSource routingDataSource,
+                                                 PlatformTransactionManager transactionManager) {
+        return new HedgedReadTemplate((ReplicationRoutingDataSource) routingDataSource, transactionManager,
+                databaseProperty.getHedge());
+    }
+
+    @Bean
+    public HedgedReadAspect hedgedReadAspect(HedgedReadTemplate hedgedReadTemplate) {
+        return new HedgedReadAspect(hedgedReadTemplate);
+    }
+}
@@ -0,0 +1,18 @@
+package com.kingcjy.replication.config.hedge;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an idempotent, read-only service method whose query may be sent to a second replica
+ * when the first one is slow. The method runs in its own read-only transaction on a hedging thread,
+ * so it must not rely on the caller's transaction or persistence context.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface HedgedRead {
+}
@@ -0,0 +1,30 @@
+package com.kingcjy.replication.config.hedge;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Runs outside of {@code @Transactional} so that each hedged attempt opens its own read-only transaction.
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class HedgedReadAspect {
+
+    private final HedgedReadTemplate hedgedReadTemplate;
+
+    public HedgedReadAspect(HedgedReadTemplate hedgedReadTemplate) {
+        this.hedgedReadTemplate = hedgedReadTemplate;
+    }
+
+    @Around("@annotation(com.kingcjy.replication.config.hedge.HedgedRead)")
+    public Object hedge(ProceedingJoinPoint joinPoint) throws Throwable {
+        if(TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+        return hedgedReadTemplate.execute(joinPoint::proceed);
+    }
+}
@@ -0,0 +1,6 @@
+package com.kingcjy.replication.config.hedge;
+
+@FunctionalInterface
+public interface HedgedReadCallback<T> {
+    T doInRead() throws Throwable;
+}
@@ -0,0 +1,302 @@
+package com.kingcjy.replication.config.hedge;
+
+import com.kingcjy.replication.config.DatabaseProperty;
+import com.kingcjy.replication.config.ReplicationRoutingDataSource;
+import com.kingcjy.replication.config.routing.ReplicaContextHolder;
+import com.kingcjy.replication.config.routing.RunningStatementHolder;
+import com.kingcjy.replication.config.routing.WritePositionHolder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs a read on one replica and, if it has not answered within the configured latency percentile,
+ * sends the same read to a second replica. Whichever answers first wins; the statement of the other one is cancelled
+ * so it gives back its replica connection and thread. Latency is measured from when an attempt starts running,
+ * not from when it was queued; a cancelled attempt counts as at least as slow as the one that beat it.
+ * When the pool is full the read runs on the calling thread instead, without a hedge.
+ * Hedges are paid from a token budget that earns {@code budget} of a hedge per read,
+ * so at most that fraction of reads is ever sent twice.
+ */
+public class HedgedReadTemplate implements DisposableBean {
+
+    private static final long HEDGE_COST = 1000;
+
+    private final ReplicationRoutingDataSource routingDataSource;
+    private final TransactionTemplate transactionTemplate;
+    private final DatabaseProperty.Hedge hedge;
+
+    private final LatencyPercentile latency;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong tokens = new AtomicLong();
+    private final long tokensPerRead;
+
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    public HedgedReadTemplate(ReplicationRoutingDataSource routingDataSource,
+                              PlatformTransactionManager transactionManager, DatabaseProperty.Hedge hedge) {
+        this.routingDataSource = routingDataSource;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.hedge = hedge;
+        this.latency = new LatencyPercentile(hedge.getPercentile(), hedge.getWindow());
+        this.tokensPerRead = Math.round(hedge.getBudget() * HEDGE_COST);
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("hedged-read-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(hedge.getPoolSize(), hedge.getPoolSize(), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(hedge.getPoolSize()), threadFactory);
+    }
+
+    public <T> T execute(HedgedReadCallback<T> callback) throws Throwable {
+        reads.increment();
+        earnTokens();
+
+        List<String> replicas = routingDataSource.getRoutableReplicas();
+        String primary = routingDataSource.selectReplica();
+        long writePosition = WritePositionHolder.get();
+
+        Attempt<T> first = submit(primary, writePosition, callback);
+        if(first == null) {
+            return read(primary, writePosition, callback);
+        }
+
+        long delay = getHedgeDelayNanos();
+        long deadline = System.nanoTime() + delay;
+        while(true) {
+            try {
+                return first.result.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // only hedge once the primary has been running for the delay, time spent queued does not count
+                long startedAt = first.startedAt;
+                if(startedAt != 0 && System.nanoTime() - startedAt >= delay) {
+                    break;
+                }
+                deadline = (startedAt != 0 ? startedAt : System.nanoTime()) + delay;
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            }
+        }
+
+        String secondary = pickSecondary(replicas, primary);
+        Attempt<T> second = secondary != null && spendTokens()
+                ? submit(secondary, writePosition, callback)
+                : null;
+        if(second == null) {
+            return await(first.result);
+        }
+        hedges.increment();
+
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        first.result.whenComplete((value, error) -> complete(winner, failures, value, error));
+        second.result.whenComplete((value, error) -> {
+            if(error == null && !winner.isDone()) {
+                hedgeWins.increment();
+            }
+            complete(winner, failures, value, error);
+        });
+        try {
+            return await(winner);
+        } finally {
+            long winnerNanos = Math.max(first.tookNanos, second.tookNanos);
+            first.cancel(winnerNanos);
+            second.cancel(winnerNanos);
+        }
+    }
+
+    public long getReads() {
+        return reads.sum();
+    }
+
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    public long getHedgeDelayNanos() {
+        return Math.max(hedge.getMinDelay().toNanos(), latency.getNanos());
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private <T> Attempt<T> submit(String replica, long writePosition, HedgedReadCallback<T> callback) {
+        Attempt<T> attempt = new Attempt<>(replica, writePosition, callback);
+        try {
+            executor.execute(attempt);
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+        return attempt;
+    }
+
+    /**
+     * Restores the replica and write position the thread had before, since a read the pool rejected runs on the
+     * request thread, which still needs its write position afterwards.
+     */
+    private <T> T read(String replica, long writePosition, HedgedReadCallback<T> callback) throws Throwable {
+        String previousReplica = ReplicaContextHolder.getReplica();
+        long previousWritePosition = WritePositionHolder.get();
+        ReplicaContextHolder.setReplica(replica);
+        WritePositionHolder.set(writePosition);
+        try {
+            return transactionTemplate.execute(status -> {
+                try {
+                    return callback.doInRead();
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new UndeclaredThrowableException(e);
+                }
+            });
+        } catch (UndeclaredThrowableException e) {
+            throw e.getUndeclaredThrowable();
+        } finally {
+            if(previousReplica != null) {
+                ReplicaContextHolder.setReplica(previousReplica);
+            } else {
+                ReplicaContextHolder.clear();
+            }
+            WritePositionHolder.set(previousWritePosition);
+        }
+    }
+
+    private String pickSecondary(List<String> replicas, String primary) {
+        int size = replicas.size();
+        if(primary == null || size < 2) {
+            return null;
+        }
+        int start = ThreadLocalRandom.current().nextInt(size);
+        for(int i = 0; i < size; i++) {
+            String candidate = replicas.get((start + i) % size);
+            if(!candidate.equals(primary)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private void earnTokens() {
+        long max = HEDGE_COST * hedge.getMaxBurst();
+        long current;
+        do {
+            current = tokens.get();
+            if(current >= max) {
+                return;
+            }
+        } while(!tokens.compareAndSet(current, Math.min(max, current + tokensPerRead)));
+    }
+
+    private boolean spendTokens() {
+        long current;
+        do {
+            current = tokens.get();
+            if(current < HEDGE_COST) {
+                return false;
+            }
+        } while(!tokens.compareAndSet(current, current - HEDGE_COST));
+        return true;
+    }
+
+    /**
+     * One read on one replica. Cancelling it skips it if it has not started yet, or cancels its running statement.
+     */
+    private class Attempt<T> implements Runnable {
+
+        private final String replica;
+        private final long writePosition;
+        private final HedgedReadCallback<T> callback;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private volatile long startedAt;
+        private volatile long tookNanos;
+        private RunningStatementHolder.Handle statements;
+        private boolean cancelled;
+        private long beatenInNanos;
+
+        private Attempt(String replica, long writePosition, HedgedReadCallback<T> callback) {
+            this.replica = replica;
+            this.writePosition = writePosition;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if(cancelled) {
+                    result.cancel(false);
+                    return;
+                }
+                statements = RunningStatementHolder.begin();
+                startedAt = System.nanoTime();
+            }
+            try {
+                T value = read(replica, writePosition, callback);
+                tookNanos = System.nanoTime() - startedAt;
+                result.complete(value);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                RunningStatementHolder.end();
+                long elapsed = System.nanoTime() - startedAt;
+                synchronized (this) {
+                    // a cancelled attempt was cut short, it would have taken at least as long as the read that won
+                    latency.record(cancelled ? Math.max(elapsed, beatenInNanos) : elapsed);
+                }
+            }
+        }
+
+        /**
+         * @param winnerNanos latency of the attempt that answered, so a cancelled one is not recorded as faster
+         */
+        private synchronized void cancel(long winnerNanos) {
+            if(result.isDone() || cancelled) {
+                return;
+            }
+            cancelled = true;
+            beatenInNanos = winnerNanos;
+            if(statements != null) {
+                statements.cancel();
+            }
+        }
+    }
+
+    private static <T> void complete(CompletableFuture<T> winner, AtomicInteger failures, T value, Throwable error) {
+        if(error == null) {
+            winner.complete(value);
+        } else if(failures.incrementAndGet() == 2) {
+            winner.completeExceptionally(error);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Throwable {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.kingcjy.replication.config.hedge;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Percentile over a ring of the most recent latency samples. The percentile is recomputed
+ * by the recording thread every {@code RECOMPUTE_INTERVAL} samples and read without locking.
+ */
+public class LatencyPercentile {
+
+    private static final int RECOMPUTE_INTERVAL = 64;
+
+    private final double percentile;
+    private final AtomicLongArray samples;
+    private final AtomicInteger count = new AtomicInteger();
+
+    private volatile long value;
+
+    public LatencyPercentile(double percentile, int window) {
+        this.percentile = percentile;
+        this.samples = new AtomicLongArray(window);
+    }
+
+    public void record(long nanos) {
+        int index = count.getAndIncrement() & Integer.MAX_VALUE;
+        samples.set(index % samples.length(), nanos);
+        if(index % RECOMPUTE_INTERVAL == RECOMPUTE_INTERVAL - 1) {
+            recompute(Math.min(index + 1, samples.length()));
+        }
+    }
+
+    /**
+     * @return the percentile in nanos, or {@code 0} until enough samples have been recorded
+     */
+    public long getNanos() {
+        return value;
+    }
+
+    private void recompute(int size) {
+        long[] sorted = new long[size];
+        for(int i = 0; i < size; i++) {
+            sorted[i] = samples.get(i);
+        }
+        Arrays.sort(sorted);
+        value = sorted[Math.min(size - 1, (int) Math.ceil(percentile * size) - 1)];
+    }
+}
@@ -0,0 +1,149 @@
+package com.kingcjy.replication.config.routing;
+
+import com.kingcjy.replication.config.DatabaseProperty;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps per routing lookup key statistics about the connections handed out by a target:
+ * how many are outstanding, and moving averages of connection-acquire and statement latency.
+ * Each key owns its own counters so threads only contend with others using the same target.
+ * Replica targets are additionally guarded by a bulkhead and a circuit breaker.
+ */
+public class ConnectionTracker {
+
+    private final ConcurrentMap<String, Target> targets = new ConcurrentHashMap<>();
+    private final long latencyDecayNanos;
+    private final DatabaseProperty.Bulkhead bulkhead;
+    private final DatabaseProperty.CircuitBreaker circuitBreaker;
+    private MeterRegistry meterRegistry;
+
+    public ConnectionTracker(long latencyDecayNanos) {
+        this(latencyDecayNanos, new DatabaseProperty.Bulkhead(), new DatabaseProperty.CircuitBreaker());
+    }
+
+    public ConnectionTracker(long latencyDecayNanos, DatabaseProperty.Bulkhead bulkhead,
+                             DatabaseProperty.CircuitBreaker circuitBreaker) {
+        this.latencyDecayNanos = latencyDecayNanos;
+        this.bulkhead = bulkhead;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Publishes per target meters to {@code meterRegistry}; must be set before the first target is tracked.
+     */
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Every tracked data source gets its own counters, so a pool that replaces another under the same key starts
+     * fresh and the replaced pool can still be drained on its own connections.
+     */
+    public DataSource track(String key, DataSource dataSource) {
+        Target target = new Target(key, "master".equals(key));
+        targets.put(key, target);
+        return new TrackingDataSource(dataSource, target);
+    }
+
+    /**
+     * Stops reporting the target of a replica that left the topology. Data sources already returned by
+     * {@link #track} keep their counters, so a removed pool can still be drained.
+     */
+    public void untrack(String key) {
+        targets.remove(key);
+    }
+
+    public int getOutstanding(String key) {
+        Target target = targets.get(key);
+        return target == null ? 0 : target.outstanding.get();
+    }
+
+    /**
+     * @param dataSource a data source returned by {@link #track}
+     * @return its connections still in use, even after another data source was tracked under the same key
+     */
+    public int getOutstanding(DataSource dataSource) {
+        return dataSource instanceof TrackingDataSource ? ((TrackingDataSource) dataSource).getOutstanding() : 0;
+    }
+
+    public double getLatencyNanos(String key) {
+        Target target = targets.get(key);
+        return target == null ? 0 : target.acquireLatency.getNanos() + target.statementLatency.getNanos();
+    }
+
+    public boolean isAvailable(String key) {
+        Target target = targets.get(key);
+        return target == null || target.isAvailable();
+    }
+
+    /**
+     * @return {@code replicas} itself when every replica can take a call, otherwise the ones that can
+     */
+    public List<String> available(List<String> replicas) {
+        int size = replicas.size();
+        for(int i = 0; i < size; i++) {
+            if(!isAvailable(replicas.get(i))) {
+                List<String> available = new ArrayList<>(size);
+                for(String key : replicas) {
+                    if(isAvailable(key)) {
+                        available.add(key);
+                    }
+                }
+                return available;
+            }
+        }
+        return replicas;
+    }
+
+    public Map<String, Target> getTargets() {
+        return Collections.unmodifiableMap(targets);
+    }
+
+    public class Target {
+        final AtomicInteger outstanding = new AtomicInteger();
+        final LatencyEwma acquireLatency;
+        final LatencyEwma statementLatency;
+        final TargetBulkhead bulkhead;
+        final TargetCircuitBreaker circuitBreaker;
+        final TargetMetrics metrics;
+
+        private Target(String key, boolean master) {
+            this.acquireLatency = new LatencyEwma(latencyDecayNanos);
+            this.statementLatency = new LatencyEwma(latencyDecayNanos);
+            this.bulkhead = new TargetBulkhead(ConnectionTracker.this.bulkhead.getMaxConcurrent(),
+                    ConnectionTracker.this.bulkhead.getMaxWait().toNanos());
+            // master has nowhere to fail over to, so its breaker is never allowed to reject writes
+            this.circuitBreaker = master ? null : new TargetCircuitBreaker(ConnectionTracker.this.circuitBreaker);
+            this.metrics = meterRegistry != null ? new TargetMetrics(meterRegistry, key) : null;
+        }
+
+        boolean isAvailable() {
+            return bulkhead.hasCapacity() && (circuitBreaker == null || circuitBreaker.isCallPermitted());
+        }
+
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        public double getLatencyMillis() {
+            return (acquireLatency.getNanos() + statementLatency.getNanos()) / 1_000_000;
+        }
+
+        public TargetBulkhead getBulkhead() {
+            return bulkhead;
+        }
+
+        public TargetCircuitBreaker getCircuitBreaker() {
+            return circuitBreaker;
+        }
+    }
+}
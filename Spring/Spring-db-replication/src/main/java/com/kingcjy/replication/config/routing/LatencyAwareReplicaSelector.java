@@ -0,0 +1,50 @@
+package com.kingcjy.replication.config.routing;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Picks a replica at random with probability inversely proportional to its latency average.
+ * Latencies are clamped to {@code minLatencyNanos} so that replicas with no samples yet, or a very fast one,
+ * do not take all of the traffic.
+ */
+public class LatencyAwareReplicaSelector implements ReplicaSelector {
+
+    private final ToDoubleFunction<String> latency;
+    private final double minLatencyNanos;
+
+    public LatencyAwareReplicaSelector(ToDoubleFunction<String> latency, double minLatencyNanos) {
+        this.latency = latency;
+        this.minLatencyNanos = minLatencyNanos;
+    }
+
+    @Override
+    public String select(List<String> replicas) {
+        int size = replicas.size();
+        if(size == 0) {
+            return null;
+        }
+        if(size == 1) {
+            return replicas.get(0);
+        }
+
+        double total = 0;
+        for(int i = 0; i < size; i++) {
+            total += weight(replicas.get(i));
+        }
+
+        double point = ThreadLocalRandom.current().nextDouble(total);
+        for(int i = 0; i < size - 1; i++) {
+            point -= weight(replicas.get(i));
+            if(point < 0) {
+                return replicas.get(i);
+            }
+        }
+        return replicas.get(size - 1);
+    }
+
+    private double weight(String key) {
+        return 1 / Math.max(minLatencyNanos, latency.applyAsDouble(key));
+    }
+}
@@ -0,0 +1,38 @@
+package com.kingcjy.replication.config.routing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exponentially weighted moving average of latency samples whose weight decays with wall-clock time
+ * rather than with the number of samples. When nothing is recorded the average keeps decaying toward zero,
+ * so a replica that stopped receiving traffic because it was slow is eventually probed again.
+ */
+public class LatencyEwma {
+
+    private final double decayNanos;
+
+    private final AtomicLong average = new AtomicLong(Double.doubleToLongBits(0));
+    private volatile long lastUpdate = System.nanoTime();
+
+    public LatencyEwma(long decayNanos) {
+        this.decayNanos = decayNanos;
+    }
+
+    public void record(long latencyNanos) {
+        long now = System.nanoTime();
+        double weight = Math.exp(-Math.max(0, now - lastUpdate) / decayNanos);
+        lastUpdate = now;
+
+        long current;
+        long next;
+        do {
+            current = average.get();
+            next = Double.doubleToLongBits(Double.longBitsToDouble(current) * weight + latencyNanos * (1 - weight));
+        } while (!average.compareAndSet(current, next));
+    }
+
+    public double getNanos() {
+        double idle = Math.max(0, System.nanoTime() - lastUpdate);
+        return Double.longBitsToDouble(average.get()) * Math.exp(-idle / decayNanos);
+    }
+}
@@ -0,0 +1,40 @@
+package com.kingcjy.replication.config.routing;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToLongFunction;
+
+/**
+ * Routes to the replica with the fewest in-flight connections.
+ * The scan starts at a rotating offset so that ties are shared instead of always going to the first replica.
+ */
+public class LeastOutstandingReplicaSelector implements ReplicaSelector {
+
+    private final ToLongFunction<String> outstanding;
+    private final AtomicInteger offset = new AtomicInteger();
+
+    public LeastOutstandingReplicaSelector(ToLongFunction<String> outstanding) {
+        this.outstanding = outstanding;
+    }
+
+    @Override
+    public String select(List<String> replicas) {
+        int size = replicas.size();
+        if(size == 0) {
+            return null;
+        }
+
+        int start = (offset.getAndIncrement() & Integer.MAX_VALUE) % size;
+        String best = null;
+        long bestLoad = Long.MAX_VALUE;
+        for(int i = 0; i < size; i++) {
+            String key = replicas.get((start + i) % size);
+            long load = outstanding.applyAsLong(key);
+            if(load < bestLoad) {
+                best = key;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,61 @@
+package com.kingcjy.replication.config.routing;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Power of two random choices: samples two distinct replicas and keeps the one with the lower load.
+ * Without an explicit load function the number of times each replica has been picked is used.
+ */
+public class RandomTwoChoicesReplicaSelector implements ReplicaSelector {
+
+    private final ConcurrentMap<String, LongAdder> picks = new ConcurrentHashMap<>();
+    private final ToLongFunction<String> load;
+
+    public RandomTwoChoicesReplicaSelector() {
+        this.load = key -> counter(key).sum();
+    }
+
+    public RandomTwoChoicesReplicaSelector(ToLongFunction<String> load) {
+        this.load = load;
+    }
+
+    @Override
+    public String select(List<String> replicas) {
+        int size = replicas.size();
+        if(size == 0) {
+            return null;
+        }
+        if(size == 1) {
+            return picked(replicas.get(0));
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if(second >= first) {
+            second++;
+        }
+
+        String a = replicas.get(first);
+        String b = replicas.get(second);
+        return picked(load.applyAsLong(a) <= load.applyAsLong(b) ? a : b);
+    }
+
+    private String picked(String key) {
+        counter(key).increment();
+        return key;
+    }
+
+    private LongAdder counter(String key) {
+        LongAdder counter = picks.get(key);
+        if(counter == null) {
+            counter = picks.computeIfAbsent(key, k -> new LongAdder());
+        }
+        return counter;
+    }
+}
@@ -0,0 +1,21 @@
+package com.kingcjy.replication.config.routing;
+
+/**
+ * Pins read-only transactions of the current thread to one specific replica, bypassing the replica selector.
+ */
+public abstract class ReplicaContextHolder {
+
+    private static final ThreadLocal<String> replica = new ThreadLocal<>();
+
+    public static String getReplica() {
+        return replica.get();
+    }
+
+    public static void setReplica(String key) {
+        replica.set(key);
+    }
+
+    public static void clear() {
+        replica.remove();
+    }
+}
@@ -0,0 +1,174 @@
+package com.kingcjy.replication.config.routing;
+
+import com.kingcjy.replication.config.DatabaseProperty;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Probes every registered replica in the background and publishes an immutable snapshot of the healthy ones.
+ * A replica is evicted after {@code failureThreshold} consecutive failed probes and reinstated after
+ * {@code successThreshold} consecutive successful ones. Routing only reads the snapshot and never waits for a probe.
+ * <p>
+ * Probes should get a direct connection to the replica rather than its pool, so they are bounded by {@code timeout}
+ * instead of the pool's connection timeout. A probe still running after {@code timeout} counts as failed on every
+ * interval it stays stuck.
+ */
+@Slf4j
+public class ReplicaHealthChecker implements InitializingBean, DisposableBean {
+
+    private final DatabaseProperty.HealthCheck healthCheck;
+    private final ConcurrentNavigableMap<String, Replica> replicas = new ConcurrentSkipListMap<>();
+
+    private volatile List<String> healthyReplicas = Collections.emptyList();
+
+    private ScheduledExecutorService scheduler;
+    private ExecutorService prober;
+
+    public ReplicaHealthChecker(DatabaseProperty.HealthCheck healthCheck) {
+        this.healthCheck = healthCheck;
+    }
+
+    public void register(String key, DataSource dataSource) {
+        replicas.put(key, new Replica(key, dataSource));
+        publish();
+    }
+
+    public void unregister(String key) {
+        replicas.remove(key);
+        publish();
+    }
+
+    public List<String> getHealthyReplicas() {
+        return healthyReplicas;
+    }
+
+    public boolean isHealthy(String key) {
+        Replica replica = replicas.get(key);
+        return replica != null && replica.healthy;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if(!healthCheck.isEnabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("replica-health-"));
+        prober = Executors.newFixedThreadPool(healthCheck.getPoolSize(), daemonThreadFactory("replica-probe-"));
+        long interval = healthCheck.getInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::probeAll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if(scheduler != null) {
+            scheduler.shutdownNow();
+            prober.shutdownNow();
+        }
+    }
+
+    private void probeAll() {
+        long now = System.nanoTime();
+        for(Replica replica : replicas.values()) {
+            if(replica.probing.compareAndSet(false, true)) {
+                replica.probeStartedAt = now;
+                replica.overdue = false;
+                prober.execute(() -> probe(replica));
+            } else if(now - replica.probeStartedAt > healthCheck.getTimeout().toNanos()) {
+                synchronized (replica) {
+                    replica.overdue = true;
+                    log.debug("health probe of {} did not finish within {}", replica.key, healthCheck.getTimeout());
+                    record(replica, false);
+                }
+            }
+        }
+    }
+
+    private void probe(Replica replica) {
+        try {
+            boolean valid;
+            try (Connection connection = replica.dataSource.getConnection()) {
+                connection.setNetworkTimeout(prober, (int) healthCheck.getTimeout().toMillis());
+                valid = connection.isValid((int) Math.max(1, healthCheck.getTimeout().getSeconds()));
+            } catch (Exception e) {
+                log.debug("health probe of {} failed", replica.key, e);
+                valid = false;
+            }
+            synchronized (replica) {
+                // an overdue probe was already counted as failed
+                if(!replica.overdue) {
+                    record(replica, valid);
+                }
+            }
+        } finally {
+            replica.probing.set(false);
+        }
+    }
+
+    private void record(Replica replica, boolean valid) {
+        if(valid) {
+            replica.consecutiveFailures = 0;
+            replica.consecutiveSuccesses++;
+            if(!replica.healthy && replica.consecutiveSuccesses >= healthCheck.getSuccessThreshold()) {
+                replica.healthy = true;
+                log.info("replica {} is healthy again, back in rotation", replica.key);
+                publish();
+            }
+        } else {
+            replica.consecutiveSuccesses = 0;
+            replica.consecutiveFailures++;
+            if(replica.healthy && replica.consecutiveFailures >= healthCheck.getFailureThreshold()) {
+                replica.healthy = false;
+                log.warn("replica {} failed {} health probes, removed from rotation", replica.key, replica.consecutiveFailures);
+                publish();
+            }
+        }
+    }
+
+    public synchronized void publish() {
+        List<String> healthy = new ArrayList<>();
+        replicas.values().forEach(replica -> {
+            if(replica.healthy) {
+                healthy.add(replica.key);
+            }
+        });
+        healthyReplicas = Collections.unmodifiableList(healthy);
+    }
+
+    private static CustomizableThreadFactory daemonThreadFactory(String prefix) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(prefix);
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    private static class Replica {
+        private final String key;
+        private final DataSource dataSource;
+        private final AtomicBoolean probing = new AtomicBoolean();
+
+        private volatile boolean healthy = true;
+        private volatile long probeStartedAt;
+        private boolean overdue;
+        private int consecutiveFailures;
+        private int consecutiveSuccesses;
+
+        private Replica(String key, DataSource dataSource) {
+            this.key = key;
+            this.dataSource = dataSource;
+        }
+    }
+}
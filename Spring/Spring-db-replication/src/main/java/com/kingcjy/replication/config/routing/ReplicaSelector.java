@@ -0,0 +1,17 @@
+package com.kingcjy.replication.config.routing;
+
+import java.util.List;
+
+/**
+ * Picks the slave lookup key a read-only transaction is routed to.
+ * Implementations are shared by every request thread, so {@link #select(List)} must be thread-safe
+ * and should not allocate on the hot path.
+ */
+public interface ReplicaSelector {
+
+    /**
+     * @param replicas immutable snapshot of the currently routable slave keys
+     * @return one of {@code replicas}, or {@code null} when the list is empty
+     */
+    String select(List<String> replicas);
+}
@@ -0,0 +1,39 @@
+package com.kingcjy.replication.config.routing;
+
+import com.kingcjy.replication.config.DatabaseProperty;
+
+public enum ReplicaSelectorType {
+    ROUND_ROBIN {
+        @Override
+        public ReplicaSelector create(DatabaseProperty databaseProperty, ConnectionTracker connectionTracker) {
+            return new RoundRobinReplicaSelector();
+        }
+    },
+    WEIGHTED_ROUND_ROBIN {
+        @Override
+        public ReplicaSelector create(DatabaseProperty databaseProperty, ConnectionTracker connectionTracker) {
+            return new WeightedRoundRobinReplicaSelector(new SlaveWeights(databaseProperty));
+        }
+    },
+    RANDOM_TWO_CHOICES {
+        @Override
+        public ReplicaSelector create(DatabaseProperty databaseProperty, ConnectionTracker connectionTracker) {
+            return new RandomTwoChoicesReplicaSelector(connectionTracker::getOutstanding);
+        }
+    },
+    LEAST_OUTSTANDING {
+        @Override
+        public ReplicaSelector create(DatabaseProperty databaseProperty, ConnectionTracker connectionTracker) {
+            return new LeastOutstandingReplicaSelector(connectionTracker::getOutstanding);
+        }
+    },
+    LATENCY_AWARE {
+        @Override
+        public ReplicaSelector create(DatabaseProperty databaseProperty, ConnectionTracker connectionTracker) {
+            return new LatencyAwareReplicaSelector(connectionTracker::getLatencyNanos,
+                    databaseProperty.getMinLatency().toNanos());
+        }
+    };
+
+    public abstract ReplicaSelector create(DatabaseProperty databaseProperty, ConnectionTracker connectionTracker);
+}
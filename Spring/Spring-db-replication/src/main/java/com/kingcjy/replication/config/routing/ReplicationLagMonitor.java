@@ -0,0 +1,109 @@
+package com.kingcjy.replication.config.routing;
+
+import com.kingcjy.replication.config.DatabaseProperty;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls {@code SHOW SLAVE STATUS} on every replica and keeps the point in time (epoch millis)
+ * up to which each replica is known to have applied the master's changes.
+ * {@code Seconds_Behind_Master} has a one second resolution, so one extra second is subtracted to stay conservative.
+ */
+@Slf4j
+public class ReplicationLagMonitor implements InitializingBean, DisposableBean {
+
+    private final DatabaseProperty.Consistency consistency;
+    private final ConcurrentMap<String, Replica> replicas = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    public ReplicationLagMonitor(DatabaseProperty.Consistency consistency) {
+        this.consistency = consistency;
+    }
+
+    public void register(String key, DataSource dataSource) {
+        replicas.put(key, new Replica(dataSource));
+    }
+
+    public void unregister(String key) {
+        replicas.remove(key);
+    }
+
+    public long getCaughtUpTo(String key) {
+        Replica replica = replicas.get(key);
+        return replica == null ? 0 : replica.caughtUpTo;
+    }
+
+    /**
+     * @return the replicas that have applied every write committed up to {@code writePosition}
+     */
+    public List<String> caughtUp(List<String> candidates, long writePosition) {
+        List<String> caughtUp = new ArrayList<>(candidates.size());
+        for(String key : candidates) {
+            if(getCaughtUpTo(key) >= writePosition) {
+                caughtUp.add(key);
+            }
+        }
+        return caughtUp;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if(!consistency.isReadYourWrites()) {
+            return;
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("replication-lag-");
+        threadFactory.setDaemon(true);
+        scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long interval = consistency.getLagCheckInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::checkAll, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if(scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void checkAll() {
+        replicas.forEach((key, replica) -> {
+            long probedAt = System.currentTimeMillis();
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SHOW SLAVE STATUS")) {
+                if(resultSet.next()) {
+                    long secondsBehind = resultSet.getLong("Seconds_Behind_Master");
+                    if(!resultSet.wasNull()) {
+                        replica.caughtUpTo = probedAt - TimeUnit.SECONDS.toMillis(secondsBehind + 1);
+                    }
+                }
+            } catch (Exception e) {
+                log.debug("replication lag check of {} failed", key, e);
+            }
+        });
+    }
+
+    private static class Replica {
+        private final DataSource dataSource;
+        private volatile long caughtUpTo;
+
+        private Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+}
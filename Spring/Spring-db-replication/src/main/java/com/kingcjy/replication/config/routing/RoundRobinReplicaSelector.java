@@ -0,0 +1,18 @@
+package com.kingcjy.replication.config.routing;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RoundRobinReplicaSelector implements ReplicaSelector {
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public String select(List<String> replicas) {
+        int size = replicas.size();
+        if(size == 0) {
+            return null;
+        }
+        return replicas.get((counter.getAndIncrement() & Integer.MAX_VALUE) % size);
+    }
+}
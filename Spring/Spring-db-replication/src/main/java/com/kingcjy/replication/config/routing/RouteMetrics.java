@@ -0,0 +1,48 @@
+package com.kingcjy.replication.config.routing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Counts routing decisions per target and reason as {@code replication.route}.
+ */
+public class RouteMetrics {
+
+    public enum Reason {
+        /** read-write transaction, always master */
+        WRITE,
+        /** read pinned to a replica by {@link ReplicaContextHolder} */
+        PINNED,
+        /** read routed to the replica picked by the selector */
+        SELECTED,
+        /** read that fell back to master because no replica was routable */
+        FALLBACK
+    }
+
+    private final MeterRegistry registry;
+    private final ConcurrentMap<String, Counter>[] counters;
+
+    @SuppressWarnings("unchecked")
+    public RouteMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.counters = new ConcurrentMap[Reason.values().length];
+        for(int i = 0; i < counters.length; i++) {
+            counters[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    public void record(String target, Reason reason) {
+        ConcurrentMap<String, Counter> byTarget = counters[reason.ordinal()];
+        Counter counter = byTarget.get(target);
+        if(counter == null) {
+            counter = byTarget.computeIfAbsent(target, key -> Counter.builder("replication.route")
+                    .tag("target", key)
+                    .tag("reason", reason.name().toLowerCase())
+                    .register(registry));
+        }
+        counter.increment();
+    }
+}
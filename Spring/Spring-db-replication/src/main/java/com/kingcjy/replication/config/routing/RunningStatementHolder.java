@@ -0,0 +1,74 @@
+package com.kingcjy.replication.config.routing;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Publishes the statement the current thread is executing to a {@link Handle}, so that another thread can cancel it.
+ * Nothing is published on threads that have not called {@link #begin()}.
+ */
+@Slf4j
+public abstract class RunningStatementHolder {
+
+    private static final ThreadLocal<Handle> handles = new ThreadLocal<>();
+
+    public static Handle begin() {
+        Handle handle = new Handle();
+        handles.set(handle);
+        return handle;
+    }
+
+    public static void end() {
+        handles.remove();
+    }
+
+    /**
+     * @throws SQLException when the handle of the current thread was cancelled before the statement started
+     */
+    static void running(Statement statement) throws SQLException {
+        Handle handle = handles.get();
+        if(handle != null) {
+            handle.running(statement);
+        }
+    }
+
+    static void finished() {
+        Handle handle = handles.get();
+        if(handle != null) {
+            handle.finished();
+        }
+    }
+
+    public static class Handle {
+
+        private Statement running;
+        private boolean cancelled;
+
+        private synchronized void running(Statement statement) throws SQLException {
+            if(cancelled) {
+                throw new SQLException("statement cancelled before it started");
+            }
+            running = statement;
+        }
+
+        private synchronized void finished() {
+            running = null;
+        }
+
+        /**
+         * Cancels the running statement, if any, and every statement the thread starts afterwards.
+         */
+        public synchronized void cancel() {
+            cancelled = true;
+            if(running != null) {
+                try {
+                    running.cancel();
+                } catch (SQLException e) {
+                    log.debug("could not cancel the running statement", e);
+                }
+            }
+        }
+    }
+}
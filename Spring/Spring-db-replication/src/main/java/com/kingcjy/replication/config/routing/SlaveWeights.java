@@ -0,0 +1,45 @@
+package com.kingcjy.replication.config.routing;
+
+import com.kingcjy.replication.config.DatabaseProperty;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Weights of the configured replicas, 1 for unknown ones. The slave list is indexed once per list instance, which
+ * a topology refresh replaces, instead of being searched on every lookup.
+ */
+class SlaveWeights implements ToIntFunction<String> {
+
+    private final DatabaseProperty databaseProperty;
+    private volatile Index index = new Index(null, new HashMap<>());
+
+    SlaveWeights(DatabaseProperty databaseProperty) {
+        this.databaseProperty = databaseProperty;
+    }
+
+    @Override
+    public int applyAsInt(String key) {
+        List<DatabaseProperty.Slave> slaveList = databaseProperty.getSlaveList();
+        Index current = index;
+        if(current.slaveList != slaveList) {
+            Map<String, Integer> weights = new HashMap<>();
+            slaveList.forEach(slave -> weights.put(slave.getName(), slave.getWeight()));
+            current = new Index(slaveList, weights);
+            index = current;
+        }
+        return current.weights.getOrDefault(key, 1);
+    }
+
+    private static class Index {
+        private final List<DatabaseProperty.Slave> slaveList;
+        private final Map<String, Integer> weights;
+
+        private Index(List<DatabaseProperty.Slave> slaveList, Map<String, Integer> weights) {
+            this.slaveList = slaveList;
+            this.weights = weights;
+        }
+    }
+}
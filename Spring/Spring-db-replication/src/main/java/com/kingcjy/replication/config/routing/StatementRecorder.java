@@ -0,0 +1,36 @@
+package com.kingcjy.replication.config.routing;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts, for the current thread, how often each SQL string has been executed since {@link #begin()}.
+ * The same statement executed many times within one request is the signature of an N+1 query.
+ * Batch executions are not counted, a bulk write sends the same batched statement many times by design.
+ * Nothing is recorded on threads that have not begun recording.
+ */
+public abstract class StatementRecorder {
+
+    private static final ThreadLocal<Map<String, Integer>> statements = new ThreadLocal<>();
+
+    public static void begin() {
+        statements.set(new HashMap<>());
+    }
+
+    static void record(String sql) {
+        Map<String, Integer> counts = statements.get();
+        if(counts != null && sql != null) {
+            counts.merge(sql, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * @return execution count per SQL string since {@link #begin()}
+     */
+    public static Map<String, Integer> end() {
+        Map<String, Integer> counts = statements.get();
+        statements.remove();
+        return counts == null ? Collections.emptyMap() : counts;
+    }
+}
@@ -0,0 +1,183 @@
+package com.kingcjy.replication.config.routing;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Routes connections used outside of a transaction by their first statement.
+ * Must wrap a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: the physical connection
+ * is only fetched when the first statement is prepared, and while that happens a plain {@code SELECT}
+ * marks the current thread so the routing data source picks a replica. Anything else, including locking reads,
+ * stays on master, and the connection keeps its target for all following statements.
+ * <p>
+ * Transaction managers fetch the connection before they mark the transaction active, so the transaction state is
+ * checked again when the first statement decides the target: a connection that had auto-commit switched off, or is
+ * used inside an active transaction, is routed like any transactional connection.
+ */
+public class StatementRoutingDataSourceProxy extends DelegatingDataSource {
+
+    private static final ThreadLocal<Boolean> currentStatementReadOnly = new ThreadLocal<>();
+
+    private static final Pattern LEADING_COMMENTS = Pattern.compile("^(\\s|/\\*.*?\\*/|--[^\\n]*\\n)+", Pattern.DOTALL);
+    private static final Pattern LOCKING_READ = Pattern.compile(
+            "\\bfor\\s+(update|share)\\b|\\block\\s+in\\s+share\\s+mode\\b|\\binto\\s+(@|outfile\\b|dumpfile\\b)");
+
+    public StatementRoutingDataSourceProxy(DataSource lazyConnectionDataSource) {
+        super(lazyConnectionDataSource);
+    }
+
+    public static boolean isCurrentStatementReadOnly() {
+        return currentStatementReadOnly.get() != null;
+    }
+
+    public static boolean isReadOnlyStatement(String sql) {
+        String statement = LEADING_COMMENTS.matcher(sql).replaceFirst("").toLowerCase(Locale.ROOT);
+        return statement.startsWith("select") && !LOCKING_READ.matcher(statement).find();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection connection = obtainTargetDataSource().getConnection();
+        if(TransactionSynchronizationManager.isActualTransactionActive()) {
+            return connection;
+        }
+        return (Connection) Proxy.newProxyInstance(
+                StatementRoutingDataSourceProxy.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new StatementRoutingInvocationHandler(connection));
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args, boolean readOnly) throws Throwable {
+        if(readOnly) {
+            currentStatementReadOnly.set(Boolean.TRUE);
+        }
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        } finally {
+            if(readOnly) {
+                currentStatementReadOnly.remove();
+            }
+        }
+    }
+
+    private static class StatementRoutingInvocationHandler implements InvocationHandler {
+
+        private final Connection target;
+        private boolean routed;
+        private boolean autoCommitDisabled;
+
+        private StatementRoutingInvocationHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "setAutoCommit":
+                    if(!routed && Boolean.FALSE.equals(args[0])) {
+                        autoCommitDisabled = true;
+                    }
+                    break;
+                case "prepareStatement":
+                    if(!routed) {
+                        routed = true;
+                        return invokeTarget(target, method, args, routesToReplica((String) args[0]));
+                    }
+                    break;
+                case "prepareCall":
+                    routed = true;
+                    break;
+                case "createStatement":
+                    if(!routed) {
+                        routed = true;
+                        return Proxy.newProxyInstance(
+                                StatementRoutingDataSourceProxy.class.getClassLoader(),
+                                new Class<?>[]{Statement.class},
+                                new DeferredStatementInvocationHandler(this, method, args));
+                    }
+                    break;
+            }
+            return invokeTarget(target, method, args, false);
+        }
+
+        private boolean routesToReplica(String sql) {
+            return !autoCommitDisabled && !TransactionSynchronizationManager.isActualTransactionActive()
+                    && isReadOnlyStatement(sql);
+        }
+    }
+
+    /**
+     * A plain {@link Statement} only sees its SQL at execution time, so its creation on the connection,
+     * and with it the choice of the physical connection, is deferred until then.
+     */
+    private static class DeferredStatementInvocationHandler implements InvocationHandler {
+
+        private final StatementRoutingInvocationHandler connection;
+        private final Method createStatement;
+        private final Object[] createStatementArgs;
+        private final List<Object[]> settings = new ArrayList<>();
+
+        private Statement target;
+        private boolean closed;
+
+        private DeferredStatementInvocationHandler(StatementRoutingInvocationHandler connection, Method createStatement,
+                                                   Object[] createStatementArgs) {
+            this.connection = connection;
+            this.createStatement = createStatement;
+            this.createStatementArgs = createStatementArgs;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "getConnection":
+                    return connection.target;
+            }
+
+            if(target == null) {
+                if(name.equals("close")) {
+                    closed = true;
+                    return null;
+                }
+                if(name.equals("isClosed")) {
+                    return closed;
+                }
+                if(name.startsWith("set")) {
+                    settings.add(new Object[]{method, args});
+                    return null;
+                }
+                boolean readOnly = name.startsWith("execute") && args != null && args.length > 0
+                        && args[0] instanceof String && connection.routesToReplica((String) args[0]);
+                target = (Statement) invokeTarget(connection.target, createStatement, createStatementArgs, readOnly);
+                for(Object[] setting : settings) {
+                    invokeTarget(target, (Method) setting[0], (Object[]) setting[1], false);
+                }
+            }
+            return invokeTarget(target, method, args, false);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.kingcjy.replication.config.routing;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of connections in use against one target. A {@code maxConcurrent} of zero disables the cap.
+ */
+public class TargetBulkhead {
+
+    private final int maxConcurrent;
+    private final long maxWaitNanos;
+    private final Semaphore permits;
+
+    public TargetBulkhead(int maxConcurrent, long maxWaitNanos) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaitNanos = maxWaitNanos;
+        this.permits = maxConcurrent > 0 ? new Semaphore(maxConcurrent) : null;
+    }
+
+    public boolean tryAcquire() throws InterruptedException {
+        return permits == null || permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void release() {
+        if(permits != null) {
+            permits.release();
+        }
+    }
+
+    public boolean hasCapacity() {
+        return permits == null || permits.availablePermits() > 0;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getAvailable() {
+        return permits == null ? Integer.MAX_VALUE : permits.availablePermits();
+    }
+}
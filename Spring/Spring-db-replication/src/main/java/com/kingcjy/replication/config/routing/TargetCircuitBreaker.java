@@ -0,0 +1,182 @@
+package com.kingcjy.replication.config.routing;
+
+import com.kingcjy.replication.config.DatabaseProperty;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Count-based circuit breaker for one routing target.
+ * The outcomes of the last {@code window} calls are kept in a ring; once at least {@code minimumCalls}
+ * have been seen and the share of failed or slow calls reaches {@code failureRateThreshold}, the breaker opens.
+ * After {@code openDuration} it lets {@code halfOpenCalls} trial calls through and closes again if they all succeed.
+ * Every call that took a permission must report exactly one outcome, so the trial permits and successes match up.
+ */
+public class TargetCircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final int EMPTY = 0;
+    private static final int SUCCESS = 1;
+    private static final int FAILURE = 2;
+
+    private final DatabaseProperty.CircuitBreaker settings;
+    private final long slowCallNanos;
+    private final long openNanos;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicIntegerArray outcomes;
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger halfOpenPermits = new AtomicInteger();
+    private final AtomicInteger halfOpenSuccesses = new AtomicInteger();
+
+    private volatile long openedAt;
+
+    public TargetCircuitBreaker(DatabaseProperty.CircuitBreaker settings) {
+        this.settings = settings;
+        this.slowCallNanos = settings.getSlowCallDuration().toNanos();
+        this.openNanos = settings.getOpenDuration().toNanos();
+        this.outcomes = new AtomicIntegerArray(settings.getWindow());
+    }
+
+    /**
+     * @return whether a call may be attempted right now, without consuming a half-open trial permit
+     */
+    public boolean isCallPermitted() {
+        State current = state.get();
+        return current == State.CLOSED
+                || (current == State.OPEN && System.nanoTime() - openedAt >= openNanos)
+                || (current == State.HALF_OPEN && halfOpenPermits.get() > 0);
+    }
+
+    public boolean tryAcquirePermission() {
+        if(!settings.isEnabled()) {
+            return true;
+        }
+        switch (state.get()) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if(System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                if(state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                    halfOpenSuccesses.set(0);
+                    halfOpenPermits.set(settings.getHalfOpenCalls());
+                }
+                return tryAcquirePermission();
+            default:
+                return tryAcquireHalfOpenPermit();
+        }
+    }
+
+    /**
+     * Only takes a permit while one is left, so rejected callers do not drive the count below zero and a permit
+     * given back by {@link #releasePermission()} can be taken again.
+     */
+    private boolean tryAcquireHalfOpenPermit() {
+        for(;;) {
+            int permits = halfOpenPermits.get();
+            if(permits <= 0) {
+                return false;
+            }
+            if(halfOpenPermits.compareAndSet(permits, permits - 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back a permission taken by {@link #tryAcquirePermission()} for a call that was never attempted.
+     */
+    public void releasePermission() {
+        if(settings.isEnabled() && state.get() == State.HALF_OPEN) {
+            halfOpenPermits.incrementAndGet();
+        }
+    }
+
+    public void onSuccess(long durationNanos) {
+        if(durationNanos >= slowCallNanos) {
+            onFailure();
+            return;
+        }
+        if(!settings.isEnabled()) {
+            return;
+        }
+        if(state.get() == State.HALF_OPEN) {
+            if(halfOpenSuccesses.incrementAndGet() >= settings.getHalfOpenCalls() && state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+                reset();
+            }
+            return;
+        }
+        record(SUCCESS);
+    }
+
+    public void onFailure() {
+        if(!settings.isEnabled()) {
+            return;
+        }
+        State current = state.get();
+        if(current == State.HALF_OPEN) {
+            open(State.HALF_OPEN);
+            return;
+        }
+        if(current == State.CLOSED) {
+            record(FAILURE);
+        }
+    }
+
+    public State getState() {
+        State current = state.get();
+        if(current == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return current;
+    }
+
+    public double getFailureRate() {
+        int total = calls.get();
+        return total == 0 ? 0 : (double) failures.get() / total;
+    }
+
+    public int getCalls() {
+        return calls.get();
+    }
+
+    private void record(int outcome) {
+        int slot = (cursor.getAndIncrement() & Integer.MAX_VALUE) % outcomes.length();
+        int previous = outcomes.getAndSet(slot, outcome);
+        if(previous == EMPTY) {
+            calls.incrementAndGet();
+        } else if(previous == FAILURE) {
+            failures.decrementAndGet();
+        }
+        if(outcome == FAILURE) {
+            failures.incrementAndGet();
+        }
+
+        int total = calls.get();
+        if(total >= settings.getMinimumCalls() && (double) failures.get() / total >= settings.getFailureRateThreshold()) {
+            open(State.CLOSED);
+        }
+    }
+
+    private void open(State from) {
+        if(state.compareAndSet(from, State.OPEN)) {
+            openedAt = System.nanoTime();
+        }
+    }
+
+    private void reset() {
+        for(int i = 0; i < outcomes.length(); i++) {
+            outcomes.set(i, EMPTY);
+        }
+        calls.set(0);
+        failures.set(0);
+    }
+}
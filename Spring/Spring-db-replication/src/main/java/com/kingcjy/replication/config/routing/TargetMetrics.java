@@ -0,0 +1,36 @@
+package com.kingcjy.replication.config.routing;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+
+/**
+ * Micrometer meters of one routing target, tagged with its lookup key.
+ * Statement latency is published as a histogram so percentiles can be aggregated across instances.
+ */
+public class TargetMetrics {
+
+    final Timer acquire;
+    final Timer statement;
+    final DistributionSummary rows;
+
+    TargetMetrics(MeterRegistry registry, String key) {
+        this.acquire = Timer.builder("replication.connection.acquire")
+                .description("Time to get a connection from the target's pool")
+                .tag("target", key)
+                .register(registry);
+        this.statement = Timer.builder("replication.statement")
+                .description("Statement execution time")
+                .tag("target", key)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(registry);
+        this.rows = DistributionSummary.builder("replication.statement.rows")
+                .description("Rows read or affected per statement")
+                .tag("target", key)
+                .register(registry);
+    }
+}
@@ -0,0 +1,333 @@
+package com.kingcjy.replication.config.routing;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the connections handed out by one target and times their checkout and statements. For the circuit breaker
+ * a call is one connection checkout: it takes a permission when the connection is obtained and reports its outcome
+ * once, failed as soon as a statement fails at the target, otherwise successful when the connection is closed.
+ */
+public class TrackingDataSource extends DelegatingDataSource {
+
+    private final AtomicInteger outstanding;
+    private final LatencyEwma acquireLatency;
+    private final LatencyEwma statementLatency;
+    private final TargetBulkhead bulkhead;
+    private final TargetCircuitBreaker circuitBreaker;
+    private final TargetMetrics metrics;
+
+    TrackingDataSource(DataSource targetDataSource, ConnectionTracker.Target target) {
+        super(targetDataSource);
+        this.outstanding = target.outstanding;
+        this.acquireLatency = target.acquireLatency;
+        this.statementLatency = target.statementLatency;
+        this.bulkhead = target.bulkhead;
+        this.circuitBreaker = target.circuitBreaker;
+        this.metrics = target.metrics;
+    }
+
+    int getOutstanding() {
+        return outstanding.get();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return getConnection(null, null);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if(circuitBreaker != null && !circuitBreaker.tryAcquirePermission()) {
+            throw new SQLTransientConnectionException("circuit breaker is open");
+        }
+        try {
+            acquireBulkhead();
+        } catch (SQLException e) {
+            // the call never reached the target
+            if(circuitBreaker != null) {
+                circuitBreaker.releasePermission();
+            }
+            throw e;
+        }
+
+        outstanding.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            Connection connection = username == null
+                    ? obtainTargetDataSource().getConnection()
+                    : obtainTargetDataSource().getConnection(username, password);
+            recordAcquire(System.nanoTime() - start);
+            return track(connection);
+        } catch (SQLException | RuntimeException e) {
+            recordAcquire(System.nanoTime() - start);
+            outstanding.decrementAndGet();
+            bulkhead.release();
+            if(circuitBreaker != null) {
+                circuitBreaker.onFailure();
+            }
+            throw e;
+        }
+    }
+
+    private void recordAcquire(long duration) {
+        acquireLatency.record(duration);
+        if(metrics != null) {
+            metrics.acquire.record(duration, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void recordStatement(long duration) {
+        statementLatency.record(duration);
+        if(metrics != null) {
+            metrics.statement.record(duration, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void acquireBulkhead() throws SQLException {
+        try {
+            if(!bulkhead.tryAcquire()) {
+                throw new SQLTransientConnectionException("bulkhead is full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("interrupted while waiting for the bulkhead", e);
+        }
+    }
+
+    private Connection track(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                TrackingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new TrackingInvocationHandler(connection));
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * Only timeouts and connection level errors count against a target; a constraint violation or a syntax error
+     * means the target answered.
+     */
+    private static boolean isTargetFailure(Throwable e) {
+        return e instanceof SQLTransientException
+                || e instanceof SQLRecoverableException
+                || e instanceof SQLNonTransientConnectionException;
+    }
+
+    private static Object handleObjectMethod(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "unwrap":
+                return ((Class<?>) args[0]).isInstance(proxy) ? proxy : null;
+            case "isWrapperFor":
+                return ((Class<?>) args[0]).isInstance(proxy) ? Boolean.TRUE : null;
+            default:
+                return null;
+        }
+    }
+
+    private class TrackingInvocationHandler implements InvocationHandler {
+
+        private final Connection target;
+        private boolean closed;
+        private boolean failed;
+        private long slowestStatement;
+
+        private TrackingInvocationHandler(Connection target) {
+            this.target = target;
+        }
+
+        private void statementFinished(long duration) {
+            slowestStatement = Math.max(slowestStatement, duration);
+        }
+
+        private void targetFailed() {
+            if(circuitBreaker != null && !failed) {
+                failed = true;
+                circuitBreaker.onFailure();
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object handled = handleObjectMethod(proxy, method, args);
+            if(handled != null) {
+                return handled;
+            }
+
+            switch (method.getName()) {
+                case "close":
+                    if(closed) {
+                        return null;
+                    }
+                    closed = true;
+                    outstanding.decrementAndGet();
+                    bulkhead.release();
+                    if(circuitBreaker != null && !failed) {
+                        circuitBreaker.onSuccess(slowestStatement);
+                    }
+                    return invokeTarget(target, method, args);
+                case "createStatement":
+                    return timed(Statement.class, (Statement) invokeTarget(target, method, args), null);
+                case "prepareStatement":
+                    return timed(PreparedStatement.class, (PreparedStatement) invokeTarget(target, method, args), (String) args[0]);
+                case "prepareCall":
+                    return timed(CallableStatement.class, (CallableStatement) invokeTarget(target, method, args), (String) args[0]);
+                default:
+                    return invokeTarget(target, method, args);
+            }
+        }
+
+        private <T extends Statement> T timed(Class<T> type, T statement, String sql) {
+            return type.cast(Proxy.newProxyInstance(
+                    TrackingDataSource.class.getClassLoader(),
+                    new Class<?>[]{type},
+                    new StatementInvocationHandler(this, statement, sql)));
+        }
+    }
+
+    private class StatementInvocationHandler implements InvocationHandler {
+
+        private final TrackingInvocationHandler connection;
+        private final Statement target;
+        private final String sql;
+
+        private StatementInvocationHandler(TrackingInvocationHandler connection, Statement target, String sql) {
+            this.connection = connection;
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object handled = handleObjectMethod(proxy, method, args);
+            if(handled != null) {
+                return handled;
+            }
+            String name = method.getName();
+            if(!name.startsWith("execute")) {
+                if(metrics != null && name.equals("getResultSet")) {
+                    return counted((ResultSet) invokeTarget(target, method, args));
+                }
+                return invokeTarget(target, method, args);
+            }
+
+            // a batch is already many rows in one round trip, however often a bulk write repeats it
+            if(!name.equals("executeBatch") && !name.equals("executeLargeBatch")) {
+                StatementRecorder.record(sql != null ? sql : args != null && args.length > 0 ? (String) args[0] : null);
+            }
+            RunningStatementHolder.running(target);
+            long start = System.nanoTime();
+            try {
+                Object result = invokeTarget(target, method, args);
+                long duration = System.nanoTime() - start;
+                recordStatement(duration);
+                connection.statementFinished(duration);
+                return metrics != null ? recordRows(result) : result;
+            } catch (Throwable e) {
+                long duration = System.nanoTime() - start;
+                recordStatement(duration);
+                if(isTargetFailure(e)) {
+                    connection.targetFailed();
+                } else {
+                    connection.statementFinished(duration);
+                }
+                throw e;
+            } finally {
+                RunningStatementHolder.finished();
+            }
+        }
+
+        private Object recordRows(Object result) {
+            if(result instanceof ResultSet) {
+                return counted((ResultSet) result);
+            }
+            if(result instanceof Integer) {
+                metrics.rows.record(Math.max(0, (Integer) result));
+            } else if(result instanceof Long) {
+                metrics.rows.record(Math.max(0, (Long) result));
+            } else if(result instanceof int[]) {
+                long rows = 0;
+                for(int count : (int[]) result) {
+                    rows += Math.max(0, count);
+                }
+                metrics.rows.record(rows);
+            }
+            return result;
+        }
+
+        private ResultSet counted(ResultSet resultSet) {
+            if(resultSet == null) {
+                return null;
+            }
+            return (ResultSet) Proxy.newProxyInstance(
+                    TrackingDataSource.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class},
+                    new RowCountingInvocationHandler(resultSet));
+        }
+    }
+
+    /**
+     * Counts the rows read from a result set and records them once it is closed.
+     */
+    private class RowCountingInvocationHandler implements InvocationHandler {
+
+        private final ResultSet target;
+        private long rows;
+        private boolean recorded;
+
+        private RowCountingInvocationHandler(ResultSet target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object handled = handleObjectMethod(proxy, method, args);
+            if(handled != null) {
+                return handled;
+            }
+            switch (method.getName()) {
+                case "next":
+                    Object next = invokeTarget(target, method, args);
+                    if(Boolean.TRUE.equals(next)) {
+                        rows++;
+                    }
+                    return next;
+                case "close":
+                    if(!recorded) {
+                        recorded = true;
+                        metrics.rows.record(rows);
+                    }
+                    return invokeTarget(target, method, args);
+                default:
+                    return invokeTarget(target, method, args);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.kingcjy.replication.config.routing;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+/**
+ * Smooth weighted round-robin. The interleaved schedule is computed once per set of replicas and weights
+ * and then walked with a single atomic counter, so selection itself takes no lock. Callers may pass a new list on
+ * every call; the schedule is only rebuilt when its members or their weights change.
+ */
+public class WeightedRoundRobinReplicaSelector implements ReplicaSelector {
+
+    private final ToIntFunction<String> weights;
+    private final AtomicInteger counter = new AtomicInteger();
+
+    private volatile Schedule schedule = new Schedule(new String[0], new int[0], new String[0]);
+
+    public WeightedRoundRobinReplicaSelector(ToIntFunction<String> weights) {
+        this.weights = weights;
+    }
+
+    @Override
+    public String select(List<String> replicas) {
+        if(replicas.isEmpty()) {
+            return null;
+        }
+        Schedule current = schedule;
+        if(!current.matches(replicas, weights)) {
+            current = buildSchedule(replicas);
+            schedule = current;
+        }
+        String[] slots = current.slots;
+        return slots[(counter.getAndIncrement() & Integer.MAX_VALUE) % slots.length];
+    }
+
+    private Schedule buildSchedule(List<String> replicas) {
+        int size = replicas.size();
+        int[] weight = new int[size];
+        int total = 0;
+        for(int i = 0; i < size; i++) {
+            weight[i] = weights.applyAsInt(replicas.get(i));
+            total += Math.max(1, weight[i]);
+        }
+
+        String[] slots = new String[total];
+        int[] current = new int[size];
+        for(int slot = 0; slot < total; slot++) {
+            int best = 0;
+            for(int i = 0; i < size; i++) {
+                current[i] += Math.max(1, weight[i]);
+                if(current[i] > current[best]) {
+                    best = i;
+                }
+            }
+            current[best] -= total;
+            slots[slot] = replicas.get(best);
+        }
+        return new Schedule(replicas.toArray(new String[0]), weight, slots);
+    }
+
+    private static class Schedule {
+        private final String[] replicas;
+        private final int[] weights;
+        private final String[] slots;
+
+        private Schedule(String[] replicas, int[] weights, String[] slots) {
+            this.replicas = replicas;
+            this.weights = weights;
+            this.slots = slots;
+        }
+
+        private boolean matches(List<String> candidates, ToIntFunction<String> weightOf) {
+            if(candidates.size() != replicas.length) {
+                return false;
+            }
+            for(int i = 0; i < replicas.length; i++) {
+                String replica = candidates.get(i);
+                if(!replica.equals(replicas[i]) || weightOf.applyAsInt(replica) != weights[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.kingcjy.replication.config.routing;
+
+/**
+ * Remembers, for the current thread, the time of the last write committed on master.
+ * Reads issued afterwards may only be routed to replicas that have replicated past that point.
+ */
+public abstract class WritePositionHolder {
+
+    private static final ThreadLocal<Long> writePosition = new ThreadLocal<>();
+
+    public static long get() {
+        Long position = writePosition.get();
+        return position == null ? 0 : position;
+    }
+
+    public static void set(long position) {
+        if(position == 0) {
+            writePosition.remove();
+        } else {
+            writePosition.set(position);
+        }
+    }
+
+    public static void clear() {
+        writePosition.remove();
+    }
+}
@@ -1,27 +1,127 @@
 package com.kingcjy.replication.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kingcjy.replication.dto.ProductBulkUpdateDto;
+import com.kingcjy.replication.dto.ProductDto;
+import com.kingcjy.replication.dto.ProductPageDto;
+import com.kingcjy.replication.dto.ProductRequestDto;
 import com.kingcjy.replication.entity.Product;
+import com.kingcjy.replication.service.ProductScanService;
 import com.kingcjy.replication.service.ProductService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/products")
 public class ProductController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BULK_SIZE = 10000;
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    // a full export or scan outlasts the default async request timeout
+    private static final long EXPORT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
     @Autowired
     private ProductService productService;
+    @Autowired
+    private ProductScanService productScanService;
+    @Autowired
+    private ObjectMapper objectMapper;
 
     @GetMapping("")
     public ResponseEntity<?> getProducts() {
-        List<Product> productList = productService.getProducts();
+        List<ProductDto> productList = productService.getProducts();
         return new ResponseEntity<>(productList, HttpStatus.OK);
     }
+    @GetMapping("/page")
+    public ResponseEntity<?> getProductPage(@RequestParam(required = false) String cursor,
+                                            @RequestParam(defaultValue = "20") int size) {
+        if(size < 1 || size > MAX_PAGE_SIZE) {
+            return new ResponseEntity<>("size must be between 1 and " + MAX_PAGE_SIZE, HttpStatus.BAD_REQUEST);
+        }
+        try {
+            ProductPageDto productPage = productService.getProducts(cursor, size);
+            return new ResponseEntity<>(productPage, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+    @GetMapping("/export")
+    public WebAsyncTask<Void> exportProducts(HttpServletResponse response) {
+        return new WebAsyncTask<>(EXPORT_TIMEOUT_MILLIS, () -> {
+            response.setContentType(APPLICATION_NDJSON.toString());
+            productService.exportProducts(response.getOutputStream());
+            return null;
+        });
+    }
+    @PostMapping("/bulk")
+    public ResponseEntity<?> saveProducts(@RequestBody List<ProductRequestDto> products) {
+        if(products.size() > MAX_BULK_SIZE) {
+            return new ResponseEntity<>("at most " + MAX_BULK_SIZE + " products per request", HttpStatus.BAD_REQUEST);
+        }
+        int count = productService.saveAll(products);
+        return new ResponseEntity<>(count, HttpStatus.CREATED);
+    }
+    @PutMapping("/{id}/contents")
+    public ResponseEntity<?> updateContents(@PathVariable Long id, @RequestBody String contents) {
+        boolean buffered = productService.updateContents(id, contents);
+        return new ResponseEntity<>(buffered ? HttpStatus.ACCEPTED : HttpStatus.NO_CONTENT);
+    }
+    @PutMapping("/bulk/contents")
+    public ResponseEntity<?> bulkUpdateContents(@RequestBody ProductBulkUpdateDto bulkUpdate) {
+        if((bulkUpdate.getIds() == null) == (bulkUpdate.getTitlePrefix() == null)) {
+            return new ResponseEntity<>("either ids or titlePrefix is required", HttpStatus.BAD_REQUEST);
+        }
+        if(bulkUpdate.getIds() != null && bulkUpdate.getIds().size() > MAX_BULK_SIZE) {
+            return new ResponseEntity<>("at most " + MAX_BULK_SIZE + " ids per request", HttpStatus.BAD_REQUEST);
+        }
+        int count = bulkUpdate.getIds() != null
+                ? productService.bulkUpdateContents(bulkUpdate.getIds(), bulkUpdate.getContents())
+                : productService.bulkUpdateContentsByTitlePrefix(bulkUpdate.getTitlePrefix(), bulkUpdate.getContents());
+        return new ResponseEntity<>(count, HttpStatus.OK);
+    }
+    @DeleteMapping("/bulk")
+    public ResponseEntity<?> bulkDelete(@RequestBody List<Long> ids) {
+        if(ids.size() > MAX_BULK_SIZE) {
+            return new ResponseEntity<>("at most " + MAX_BULK_SIZE + " ids per request", HttpStatus.BAD_REQUEST);
+        }
+        int count = productService.bulkDelete(ids);
+        return new ResponseEntity<>(count, HttpStatus.OK);
+    }
+    @GetMapping("/scan")
+    public WebAsyncTask<Void> scanProducts(@RequestParam(required = false) Long from,
+                                           @RequestParam(required = false) Long to,
+                                           HttpServletResponse response) {
+        return new WebAsyncTask<>(EXPORT_TIMEOUT_MILLIS, () -> {
+            response.setContentType(APPLICATION_NDJSON.toString());
+            try (Stream<ProductDto> products = from == null || to == null
+                    ? productScanService.scanAll()
+                    : productScanService.scan(from, to);
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+                Iterator<ProductDto> iterator = products.iterator();
+                while (iterator.hasNext()) {
+                    generator.writeObject(iterator.next());
+                    generator.writeRaw('\n');
+                }
+            }
+            return null;
+        });
+    }
     @GetMapping("/master")
     public ResponseEntity<?> getProductsFromMaster() {
         List<Product> productList = productService.getProductsMaster();
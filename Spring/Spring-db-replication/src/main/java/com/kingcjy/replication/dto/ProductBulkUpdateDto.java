@@ -0,0 +1,15 @@
+package com.kingcjy.replication.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Selects the products either by {@code ids} or by {@code titlePrefix}.
+ */
+@Data
+public class ProductBulkUpdateDto {
+    private List<Long> ids;
+    private String titlePrefix;
+    private String contents;
+}
@@ -0,0 +1,12 @@
+package com.kingcjy.replication.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class ProductDto {
+    private Long id;
+    private String title;
+    private String contents;
+}
@@ -0,0 +1,13 @@
+package com.kingcjy.replication.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class ProductPageDto {
+    private List<ProductDto> content;
+    private String nextCursor;
+}
@@ -0,0 +1,17 @@
+package com.kingcjy.replication.dto;
+
+import com.kingcjy.replication.entity.Product;
+import lombok.Data;
+
+@Data
+public class ProductRequestDto {
+    private String title;
+    private String contents;
+
+    public Product toEntity() {
+        return Product.builder()
+                .title(title)
+                .contents(contents)
+                .build();
+    }
+}
@@ -1,7 +1,88 @@
 package com.kingcjy.replication.entity;
 
+import com.kingcjy.replication.dto.ProductDto;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_MODE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
+
+    /**
+     * Projections select only the columns into plain objects, no managed entity is ever hydrated.
+     * Accepts DTO classes as well as interface projections.
+     */
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    <T> List<T> findAllProjectedBy(Class<T> type);
+
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query("select new com.kingcjy.replication.dto.ProductDto(p.id, p.title, p.contents) from Product p " +
+            "where p.id > :id order by p.id")
+    List<ProductDto> findProductsAfter(@Param("id") Long id, Pageable pageable);
+
+    @Query("select new com.kingcjy.replication.dto.ProductDto(p.id, p.title, p.contents) from Product p " +
+            "where p.id >= :fromId and p.id < :toId order by p.id")
+    List<ProductDto> findProductsBetween(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    @Query("select coalesce(min(p.id), 0) from Product p")
+    long findMinId();
+
+    @Query("select coalesce(max(p.id), 0) from Product p")
+    long findMaxId();
+
+    /**
+     * A full scan must not flush hot products out of the second-level cache, so it neither reads from nor writes
+     * to it. Rows are fetched in batches of 1000 where the driver supports it.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false"),
+            @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE"),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("select p from Product p order by p.id")
+    Stream<Product> streamAll();
+
+    /**
+     * {@link #streamAll()} for MySQL only. Connector/J buffers the whole result set unless the fetch size is
+     * {@link Integer#MIN_VALUE}, which makes it stream rows from the server one at a time. Other drivers,
+     * H2 among them, reject a negative fetch size.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HINT_CACHEABLE, value = "false"),
+            @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE"),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("select p from Product p order by p.id")
+    Stream<Product> streamAllFromMySql();
+
+    /*
+     * Set-based statements: a single round trip no matter how many rows match. Hibernate evicts the product
+     * region and invalidates cached queries for bulk statements, and the persistence context is cleared afterwards.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Product p set p.contents = :contents where p.id in :ids")
+    int updateContents(@Param("ids") Collection<Long> ids, @Param("contents") String contents);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Product p set p.contents = :contents where p.title like :titlePattern escape '!'")
+    int updateContentsByTitleLike(@Param("titlePattern") String titlePattern, @Param("contents") String contents);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Product p where p.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,174 @@
+package com.kingcjy.replication.service;
+
+import com.kingcjy.replication.config.DatabaseProperty;
+import com.kingcjy.replication.config.ReplicationRoutingDataSource;
+import com.kingcjy.replication.config.routing.ReplicaContextHolder;
+import com.kingcjy.replication.dto.ProductDto;
+import com.kingcjy.replication.entity.ProductRepository;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Scans an id range by splitting it into slices of {@code datasource.scan.slice-size} ids and reading them
+ * concurrently, each slice pinned to a different replica. One slice per routable replica is in flight at a time,
+ * so memory stays bounded, and the slices are merged back in id order.
+ */
+@Service
+public class ProductScanService implements InitializingBean, DisposableBean {
+
+    @Autowired
+    private DatabaseProperty databaseProperty;
+    @Autowired
+    @Qualifier("routingDataSource")
+    private DataSource routingDataSource;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ProductRepository productRepository;
+
+    private TransactionTemplate transactionTemplate;
+    private ThreadPoolExecutor executor;
+
+    @Override
+    public void afterPropertiesSet() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+
+        int poolSize = databaseProperty.getScan().getPoolSize();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("product-scan-");
+        threadFactory.setDaemon(true);
+        // a full queue runs the slice on the consuming thread instead of failing the scan
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(poolSize), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public Stream<ProductDto> scanAll() {
+        return scan(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * The range is narrowed to the ids that exist, so a wide range does not schedule slices past the last product.
+     * Closing the stream drops the slices that have not started yet; a slice already running still finishes its
+     * query and its rows are discarded.
+     *
+     * @param fromId inclusive
+     * @param toId exclusive
+     */
+    public Stream<ProductDto> scan(long fromId, long toId) {
+        long minId = transactionTemplate.execute(status -> productRepository.findMinId());
+        long maxId = transactionTemplate.execute(status -> productRepository.findMaxId());
+        fromId = Math.max(fromId, minId);
+        toId = Math.min(toId, saturatedAdd(maxId, 1));
+
+        List<String> replicas = ((ReplicationRoutingDataSource) routingDataSource).getRoutableReplicas();
+        int parallelism = Math.max(1, Math.min(replicas.size(), databaseProperty.getScan().getPoolSize()));
+        SliceIterator slices = new SliceIterator(fromId, toId, replicas, parallelism);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(slices, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .flatMap(List::stream)
+                .onClose(slices::cancel);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private List<ProductDto> readSlice(String replica, long fromId, long toId) {
+        if(replica != null) {
+            ReplicaContextHolder.setReplica(replica);
+        }
+        try {
+            return transactionTemplate.execute(status -> productRepository.findProductsBetween(fromId, toId));
+        } finally {
+            ReplicaContextHolder.clear();
+        }
+    }
+
+    private static long saturatedAdd(long value, long increment) {
+        long sum = value + increment;
+        return increment > 0 && sum < value ? Long.MAX_VALUE : sum;
+    }
+
+    private class SliceIterator implements Iterator<List<ProductDto>> {
+
+        private final long toId;
+        private final long sliceSize;
+        private final List<String> replicas;
+        private final int parallelism;
+        private final Deque<CompletableFuture<List<ProductDto>>> inFlight = new ArrayDeque<>();
+
+        private long nextFromId;
+        private int nextSlice;
+
+        private SliceIterator(long fromId, long toId, List<String> replicas, int parallelism) {
+            this.nextFromId = fromId;
+            this.toId = toId;
+            this.sliceSize = databaseProperty.getScan().getSliceSize();
+            this.replicas = replicas;
+            this.parallelism = parallelism;
+            fill();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !inFlight.isEmpty();
+        }
+
+        @Override
+        public List<ProductDto> next() {
+            if(inFlight.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            List<ProductDto> slice;
+            try {
+                slice = inFlight.poll().join();
+            } catch (CompletionException e) {
+                cancel();
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+            fill();
+            return slice;
+        }
+
+        private void fill() {
+            while (inFlight.size() < parallelism && nextFromId < toId) {
+                long sliceFromId = nextFromId;
+                long sliceToId = Math.min(toId, saturatedAdd(sliceFromId, sliceSize));
+                String replica = replicas.isEmpty() ? null : replicas.get(nextSlice % replicas.size());
+                inFlight.add(CompletableFuture.supplyAsync(() -> readSlice(replica, sliceFromId, sliceToId), executor));
+                nextFromId = sliceToId;
+                nextSlice++;
+            }
+        }
+
+        /**
+         * Slices still queued are skipped; cancelling does not interrupt one that is already running.
+         */
+        private void cancel() {
+            inFlight.forEach(future -> future.cancel(true));
+            inFlight.clear();
+        }
+    }
+}
@@ -1,16 +1,34 @@
 package com.kingcjy.replication.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kingcjy.replication.config.hedge.HedgedRead;
+import com.kingcjy.replication.dto.ProductDto;
+import com.kingcjy.replication.dto.ProductPageDto;
+import com.kingcjy.replication.dto.ProductRequestDto;
 import com.kingcjy.replication.entity.Product;
 import com.kingcjy.replication.entity.ProductRepository;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -20,6 +38,15 @@ public class ProductService {
     private ProductRepository productRepository;
     @Autowired
     private ProductService2 productService2;
+    @Autowired
+    private ProductWriteBehindBuffer productWriteBehindBuffer;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
 
     @Transactional(propagation = Propagation.NEVER)
     public void test() {
@@ -33,15 +60,116 @@ public class ProductService {
         return productRepository.findById(1L).get();
     }
 
-    public void save(Product product) {
-//        productRepository.save(product);
-        throw new RuntimeException("A");
+    @Transactional
+    public Product save(Product product) {
+        return productRepository.save(product);
+    }
+
+    /**
+     * @return {@code true} if the update is buffered and will reach master within the write-behind window
+     */
+    public boolean updateContents(Long id, String contents) {
+        return productWriteBehindBuffer.updateContents(id, contents);
+    }
+
+    /**
+     * Buffered write-behind updates are flushed first, so they cannot overwrite the bulk update later on.
+     */
+    @Transactional
+    public int bulkUpdateContents(Collection<Long> ids, String contents) {
+        if(ids.isEmpty()) {
+            return 0;
+        }
+        productWriteBehindBuffer.flush();
+        return productRepository.updateContents(ids, contents);
+    }
+
+    @Transactional
+    public int bulkUpdateContentsByTitlePrefix(String titlePrefix, String contents) {
+        productWriteBehindBuffer.flush();
+        String titlePattern = titlePrefix.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+        return productRepository.updateContentsByTitleLike(titlePattern, contents);
+    }
+
+    @Transactional
+    public int bulkDelete(Collection<Long> ids) {
+        if(ids.isEmpty()) {
+            return 0;
+        }
+        return productRepository.deleteByIds(ids);
+    }
+
+    /**
+     * Persists the products in JDBC batches, flushing and clearing the persistence context after every batch
+     * so it does not grow with the request. New rows are not put into the second-level cache.
+     */
+    @Transactional
+    public int saveAll(List<ProductRequestDto> products) {
+        entityManager.unwrap(Session.class).setCacheMode(CacheMode.IGNORE);
+        for(int i = 0; i < products.size(); i++) {
+            entityManager.persist(products.get(i).toEntity());
+            if((i + 1) % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        return products.size();
     }
 
+    @HedgedRead
     @Transactional(readOnly = true)
-    public List<Product> getProducts() {
-        return productRepository.findAll();
+    public List<ProductDto> getProducts() {
+        return productRepository.findAllProjectedBy(ProductDto.class);
+    }
+    /**
+     * Keyset pagination: seeks on {@code id > lastSeenId} through the primary key index,
+     * so every page costs the same no matter how deep it is.
+     */
+    @Transactional(readOnly = true)
+    public ProductPageDto getProducts(String cursor, int size) {
+        List<ProductDto> products = productRepository.findProductsAfter(ProductCursor.decode(cursor),
+                PageRequest.of(0, size + 1));
+
+        String nextCursor = null;
+        if(products.size() > size) {
+            products = products.subList(0, size);
+            nextCursor = ProductCursor.encode(products.get(size - 1).getId());
+        }
+        return new ProductPageDto(products, nextCursor);
+    }
+
+    /**
+     * Writes every product as one JSON line. Rows are streamed from a replica and each entity is detached
+     * once written, so neither the result set nor the persistence context grows with the table. How to stream
+     * depends on the database behind the replica connection the export runs on, not on master's configuration.
+     */
+    @Transactional(readOnly = true)
+    public long exportProducts(OutputStream outputStream) throws IOException {
+        long count = 0;
+        try (Stream<Product> products = isMySql()
+                ? productRepository.streamAllFromMySql()
+                : productRepository.streamAll();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+            Iterator<Product> iterator = products.iterator();
+            while (iterator.hasNext()) {
+                Product product = iterator.next();
+                generator.writeObject(product);
+                generator.writeRaw('\n');
+                entityManager.detach(product);
+                count++;
+            }
+        }
+        return count;
     }
+
+    private boolean isMySql() {
+        String databaseProductName = entityManager.unwrap(Session.class)
+                .doReturningWork(connection -> connection.getMetaData().getDatabaseProductName());
+        return "MySQL".equalsIgnoreCase(databaseProductName);
+    }
+
     @Transactional
     public List<Product> getProductsMaster() {
         return productRepository.findAll();
@@ -0,0 +1,153 @@
+package com.kingcjy.replication.service;
+
+import com.kingcjy.replication.config.DatabaseProperty;
+import com.kingcjy.replication.entity.Product;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces {@code contents} updates of the same product within {@code datasource.write-behind.window}
+ * and writes only the latest value of each row to master, as a single JDBC batch.
+ * When write-behind is disabled every update is written through immediately.
+ */
+@Slf4j
+@Component
+public class ProductWriteBehindBuffer implements InitializingBean, DisposableBean {
+
+    private static final String UPDATE_CONTENTS = "update product set contents = ? where id = ?";
+
+    @Autowired
+    private DatabaseProperty databaseProperty;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final Object flushMonitor = new Object();
+    private final ConcurrentMap<Long, String> pending = new ConcurrentHashMap<>();
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private ScheduledExecutorService scheduler;
+
+    @Override
+    public void afterPropertiesSet() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        DatabaseProperty.WriteBehind writeBehind = databaseProperty.getWriteBehind();
+        if(!writeBehind.isEnabled()) {
+            return;
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("product-write-behind-");
+        threadFactory.setDaemon(true);
+        scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long window = writeBehind.getWindow().toMillis();
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, window, window, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return {@code true} if the update was buffered, {@code false} if it has already been written
+     */
+    public boolean updateContents(Long id, String contents) {
+        pending.put(id, contents);
+        if(scheduler == null || pending.size() >= databaseProperty.getWriteBehind().getMaxPending()) {
+            flush();
+            return false;
+        }
+        return true;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Writes every pending update. Failed updates are put back unless the row has been updated again meanwhile.
+     *
+     * @return the number of rows written
+     */
+    public int flush() {
+        synchronized (flushMonitor) {
+            // entries are removed one by one, so an update arriving meanwhile is either taken now or stays for the next flush
+            Map<Long, String> updates = new HashMap<>();
+            for(Long id : pending.keySet()) {
+                String contents = pending.remove(id);
+                if(contents != null) {
+                    updates.put(id, contents);
+                }
+            }
+            if(updates.isEmpty()) {
+                return 0;
+            }
+
+            List<Object[]> batchArgs = new ArrayList<>(updates.size());
+            updates.forEach((id, contents) -> batchArgs.add(new Object[]{contents, id}));
+            try {
+                transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(UPDATE_CONTENTS, batchArgs));
+            } catch (RuntimeException e) {
+                updates.forEach(pending::putIfAbsent);
+                throw e;
+            }
+            evict(updates.keySet());
+            return updates.size();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Failed to flush {} pending product updates", pending.size(), e);
+        }
+    }
+
+    /**
+     * The batch bypasses Hibernate, so the updated entities and every cached product query are evicted by hand.
+     */
+    private void evict(Iterable<Long> ids) {
+        Cache cache = entityManagerFactory.getCache().unwrap(Cache.class);
+        for(Long id : ids) {
+            cache.evictEntityData(Product.class, id);
+        }
+        cache.evictDefaultQueryRegion();
+    }
+
+    @Override
+    public void destroy() {
+        if(scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(databaseProperty.getWriteBehind().getWindow().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if(!pending.isEmpty()) {
+            log.info("Flushing {} pending product updates before shutdown", pending.size());
+            flushQuietly();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.kingcjy.replication.benchmark;
+
+import com.kingcjy.replication.dto.ProductRequestDto;
+import com.kingcjy.replication.entity.Product;
+import com.kingcjy.replication.entity.ProductRepository;
+import com.kingcjy.replication.service.ProductService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares one-at-a-time saves with the batched bulk ingest against an in-memory H2 database.
+ * Not part of the default test run, start it with {@code mvn test -Dtest=ProductIngestBenchmark}.
+ */
+@Slf4j
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("h2")
+public class ProductIngestBenchmark {
+
+    private static final int ROWS = 20000;
+    private static final int ROUNDS = 3;
+
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private ProductRepository productRepository;
+
+    @After
+    public void tearDown() {
+        productRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void ingest() {
+        for(int round = 0; round < ROUNDS; round++) {
+            double single = measure("save", () -> {
+                for(ProductRequestDto product : products()) {
+                    productService.save(product.toEntity());
+                }
+            });
+            double bulk = measure("saveAll", () -> productService.saveAll(products()));
+            log.info("round {}: save {} rows/s, saveAll {} rows/s ({}x)",
+                    round, (long) single, (long) bulk, String.format("%.1f", bulk / single));
+        }
+    }
+
+    private double measure(String name, Runnable ingest) {
+        productRepository.deleteAllInBatch();
+        long start = System.nanoTime();
+        ingest.run();
+        long elapsed = System.nanoTime() - start;
+        assertThat(productRepository.count()).as(name).isEqualTo(ROWS);
+        return ROWS / (elapsed / 1_000_000_000.0);
+    }
+
+    private List<ProductRequestDto> products() {
+        List<ProductRequestDto> products = new ArrayList<>(ROWS);
+        for(int i = 0; i < ROWS; i++) {
+            ProductRequestDto product = new ProductRequestDto();
+            product.setTitle("title" + i);
+            product.setContents("contents" + i);
+            products.add(product);
+        }
+        return products;
+    }
+}
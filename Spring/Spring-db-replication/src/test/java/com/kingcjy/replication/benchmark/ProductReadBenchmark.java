@@ -0,0 +1,98 @@
+package com.kingcjy.replication.benchmark;
+
+import com.kingcjy.replication.dto.ProductDto;
+import com.kingcjy.replication.dto.ProductRequestDto;
+import com.kingcjy.replication.entity.ProductRepository;
+import com.kingcjy.replication.service.ProductService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bytes allocated by the reading thread to load the product list: managed entities in a read-write transaction,
+ * read-only entities, and DTO projections. Runs against an in-memory H2 database and is not part of the default
+ * test run, start it with {@code mvn test -Dtest=ProductReadBenchmark}.
+ */
+@Slf4j
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("h2")
+public class ProductReadBenchmark {
+
+    private static final int ROWS = 20000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 5;
+
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Before
+    public void setUp() {
+        List<ProductRequestDto> products = new ArrayList<>(ROWS);
+        for(int i = 0; i < ROWS; i++) {
+            ProductRequestDto product = new ProductRequestDto();
+            product.setTitle("title" + i);
+            product.setContents("contents" + i);
+            products.add(product);
+        }
+        productService.saveAll(products);
+    }
+
+    @After
+    public void tearDown() {
+        productRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void read() {
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        Supplier<List<?>> managedEntities = () -> readWrite.execute(status -> productRepository.findAll());
+        Supplier<List<?>> readOnlyEntities = () -> readOnly.execute(status -> productRepository.findAll());
+        Supplier<List<?>> projections = () -> readOnly.execute(status -> productRepository.findAllProjectedBy(ProductDto.class));
+
+        for(int round = 0; round < WARMUP_ROUNDS; round++) {
+            allocatedBytes(managedEntities);
+            allocatedBytes(readOnlyEntities);
+            allocatedBytes(projections);
+        }
+        for(int round = 0; round < ROUNDS; round++) {
+            log.info("round {}: read-write entities {} KB, read-only entities {} KB, read-only projections {} KB",
+                    round, allocatedBytes(managedEntities) / 1024, allocatedBytes(readOnlyEntities) / 1024,
+                    allocatedBytes(projections) / 1024);
+        }
+    }
+
+    private long allocatedBytes(Supplier<List<?>> read) {
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        List<?> products = read.get();
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+        assertThat(products).hasSize(ROWS);
+        return allocated;
+    }
+}
@@ -0,0 +1,114 @@
+package com.kingcjy.replication.benchmark;
+
+import com.kingcjy.replication.config.DatabaseProperty;
+import com.kingcjy.replication.config.ReplicaTopologyManager;
+import com.kingcjy.replication.service.ProductScanService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Scan time of the whole product range against 1, 2 and 4 replicas. Every replica is its own in-memory H2 database
+ * whose {@code product} view reads at most one row per {@link #ROW_NANOS}, standing in for a replica bound by its
+ * own disk and CPU. Not part of the default test run, start it with {@code mvn test -Dtest=ProductScanBenchmark}.
+ */
+@Slf4j
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "datasource.scan.slice-size=5000")
+@ActiveProfiles("h2")
+public class ProductScanBenchmark {
+
+    private static final int ROWS = 100000;
+    private static final long ROW_NANOS = 20000;
+    private static final int[] REPLICAS = {1, 2, 4};
+
+    @Autowired
+    private ProductScanService productScanService;
+    @Autowired
+    private ReplicaTopologyManager replicaTopologyManager;
+    @Autowired
+    private DatabaseProperty databaseProperty;
+
+    private List<DatabaseProperty.Slave> slaveList;
+
+    public static boolean throttle(long id) {
+        LockSupport.parkNanos(ROW_NANOS);
+        return true;
+    }
+
+    @Before
+    public void setUp() throws SQLException {
+        slaveList = databaseProperty.getSlaveList();
+        for(int replica = 1; replica <= REPLICAS[REPLICAS.length - 1]; replica++) {
+            seed(url(replica));
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        replicaTopologyManager.refresh(slaveList);
+    }
+
+    @Test
+    public void scan() throws SQLException {
+        for(int replicas : REPLICAS) {
+            List<DatabaseProperty.Slave> slaves = new ArrayList<>();
+            for(int replica = 1; replica <= replicas; replica++) {
+                DatabaseProperty.Slave slave = new DatabaseProperty.Slave();
+                slave.setName("scan_" + replica);
+                slave.setUrl(url(replica));
+                slaves.add(slave);
+            }
+            replicaTopologyManager.refresh(slaves);
+
+            long start = System.nanoTime();
+            long count = productScanService.scan(1, ROWS + 1).count();
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertThat(count).isEqualTo(ROWS);
+            log.info("{} replica(s): {} rows in {} ms", replicas, count, elapsed);
+        }
+    }
+
+    private String url(int replica) {
+        return "jdbc:h2:mem:scan_" + replica + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+    }
+
+    private void seed(String url) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("create table product_data (id bigint primary key, title varchar(255), contents varchar(255))");
+            statement.execute("create alias throttle for \"" + getClass().getName() + ".throttle\"");
+            statement.execute("create view product as select * from product_data where throttle(id)");
+            try (PreparedStatement insert = connection.prepareStatement("insert into product_data values (?, ?, ?)")) {
+                for(long id = 1; id <= ROWS; id++) {
+                    insert.setLong(1, id);
+                    insert.setString(2, "title" + id);
+                    insert.setString(3, "contents" + id);
+                    insert.addBatch();
+                    if(id % 1000 == 0) {
+                        insert.executeBatch();
+                    }
+                }
+            }
+        }
+    }
+}
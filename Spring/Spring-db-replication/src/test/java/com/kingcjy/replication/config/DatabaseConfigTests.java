@@ -0,0 +1,69 @@
+package com.kingcjy.replication.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.h2.jdbc.JdbcConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DatabaseConfigTests {
+
+    private HikariDataSource dataSource;
+
+    @Before
+    public void setUp() {
+        DatabaseProperty databaseProperty = new DatabaseProperty();
+        databaseProperty.setDriverClassName("org.h2.Driver");
+        databaseProperty.setUsername("sa");
+        databaseProperty.setPassword("");
+
+        DatabaseConfig databaseConfig = new DatabaseConfig();
+        ReflectionTestUtils.setField(databaseConfig, "databaseProperty", databaseProperty);
+
+        DatabaseProperty.Pool defaults = new DatabaseProperty.Pool();
+        defaults.setMaximumPoolSize(10);
+        defaults.setMaxLifetime(Duration.ofMinutes(30));
+        DatabaseProperty.Pool pool = new DatabaseProperty.Pool();
+        pool.setMaximumPoolSize(2);
+        pool.setMinimumIdle(1);
+        pool.setConnectionTimeout(Duration.ofSeconds(1));
+
+        dataSource = (HikariDataSource) databaseConfig.createDataSource("slave_1",
+                "jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1", pool.merge(defaults));
+    }
+
+    @After
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    public void perNodePoolSettingsOverrideDefaults() {
+        assertThat(dataSource.getPoolName()).isEqualTo("slave_1");
+        assertThat(dataSource.getMaximumPoolSize()).isEqualTo(2);
+        assertThat(dataSource.getMinimumIdle()).isEqualTo(1);
+        assertThat(dataSource.getMaxLifetime()).isEqualTo(Duration.ofMinutes(30).toMillis());
+        assertThat(dataSource.getConnectionTimeout()).isEqualTo(1000);
+    }
+
+    @Test
+    public void physicalConnectionIsReused() throws Exception {
+        JdbcConnection first;
+        try (Connection connection = dataSource.getConnection()) {
+            first = connection.unwrap(JdbcConnection.class);
+        }
+
+        for(int i = 0; i < 100; i++) {
+            try (Connection connection = dataSource.getConnection()) {
+                assertThat(connection.unwrap(JdbcConnection.class)).isSameAs(first);
+            }
+        }
+        assertThat(dataSource.getHikariPoolMXBean().getTotalConnections()).isLessThanOrEqualTo(2);
+    }
+}
@@ -0,0 +1,41 @@
+package com.kingcjy.replication.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NPlusOneDetectionFilterTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final NPlusOneDetectionFilter filter = new NPlusOneDetectionFilter(registry, 10);
+
+    @Test
+    public void reportsStatementsAtOrAboveThreshold() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/products/42");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/products/{id}");
+
+        Map<String, Integer> statements = new LinkedHashMap<>();
+        statements.put("select * from product where id = ?", 10);
+        statements.put("select * from category where id = ?", 12);
+        statements.put("select count(*) from product", 9);
+        filter.report(request, statements);
+
+        assertThat(registry.get("replication.n_plus_one").tags("method", "GET", "uri", "/api/products/{id}")
+                .counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void ignoresRequestsBelowThreshold() {
+        Map<String, Integer> statements = new LinkedHashMap<>();
+        statements.put("select * from product where id = ?", 9);
+        filter.report(new MockHttpServletRequest("GET", "/api/products"), statements);
+
+        assertThat(registry.find("replication.n_plus_one").counter()).isNull();
+    }
+}
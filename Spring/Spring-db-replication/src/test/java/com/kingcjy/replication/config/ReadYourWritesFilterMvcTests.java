@@ -0,0 +1,51 @@
+package com.kingcjy.replication.config;
+
+import com.kingcjy.replication.entity.ProductRepository;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.servlet.http.Cookie;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "datasource.consistency.read-your-writes=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+public class ReadYourWritesFilterMvcTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ProductRepository productRepository;
+
+    @After
+    public void tearDown() {
+        productRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void setsTheCookieBeforeAJsonBodyCommitsTheResponse() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(post("/api/products/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"title\": \"keyboard\", \"contents\": \"contents\"}]"))
+                .andReturn().getResponse();
+
+        assertThat(response.getStatus()).isEqualTo(201);
+        assertThat(response.getContentAsString()).isEqualTo("1");
+        assertThat(response.isCommitted()).isTrue();
+        Cookie cookie = response.getCookie(ReadYourWritesFilter.WRITE_POSITION_COOKIE);
+        assertThat(cookie).isNotNull();
+        assertThat(Long.parseLong(cookie.getValue())).isPositive();
+    }
+}
@@ -0,0 +1,47 @@
+package com.kingcjy.replication.config;
+
+import com.kingcjy.replication.config.routing.WritePositionHolder;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.Cookie;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReadYourWritesFilterTests {
+
+    private final ReadYourWritesFilter filter = new ReadYourWritesFilter(true);
+
+    @Test
+    public void carriesTheWritePositionInACookieWithoutASession() throws Exception {
+        MockHttpServletRequest write = new MockHttpServletRequest("POST", "/api/products");
+        MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+        filter.doFilter(write, writeResponse, (request, response) -> WritePositionHolder.set(42));
+
+        assertThat(write.getSession(false)).isNull();
+        Cookie cookie = writeResponse.getCookie(ReadYourWritesFilter.WRITE_POSITION_COOKIE);
+        assertThat(cookie.getValue()).isEqualTo("42");
+
+        MockHttpServletRequest read = new MockHttpServletRequest("GET", "/api/products");
+        read.setCookies(cookie);
+        AtomicLong restored = new AtomicLong();
+        MockHttpServletResponse readResponse = new MockHttpServletResponse();
+        filter.doFilter(read, readResponse, (request, response) -> restored.set(WritePositionHolder.get()));
+
+        assertThat(restored.get()).isEqualTo(42);
+        assertThat(readResponse.getCookie(ReadYourWritesFilter.WRITE_POSITION_COOKIE)).isNull();
+        assertThat(WritePositionHolder.get()).isZero();
+    }
+
+    @Test
+    public void ignoresAMalformedCookie() throws Exception {
+        MockHttpServletRequest read = new MockHttpServletRequest("GET", "/api/products");
+        read.setCookies(new Cookie(ReadYourWritesFilter.WRITE_POSITION_COOKIE, "not-a-position"));
+        AtomicLong restored = new AtomicLong(-1);
+        filter.doFilter(read, new MockHttpServletResponse(), (request, response) -> restored.set(WritePositionHolder.get()));
+
+        assertThat(restored.get()).isZero();
+    }
+}
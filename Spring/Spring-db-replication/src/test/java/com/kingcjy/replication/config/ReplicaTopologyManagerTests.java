@@ -0,0 +1,197 @@
+package com.kingcjy.replication.config;
+
+import com.kingcjy.replication.config.routing.ConnectionTracker;
+import com.kingcjy.replication.config.routing.ReplicaHealthChecker;
+import com.kingcjy.replication.config.routing.ReplicationLagMonitor;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ReplicaTopologyManagerTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DatabaseProperty databaseProperty;
+    private ReplicationRoutingDataSource routingDataSource;
+    private ConnectionTracker connectionTracker;
+    private ReplicaHealthChecker replicaHealthChecker;
+    private ReplicaTopologyManager replicaTopologyManager;
+
+    @Before
+    public void setUp() {
+        databaseProperty = new DatabaseProperty();
+        databaseProperty.setDriverClassName("org.h2.Driver");
+        databaseProperty.setUsername("sa");
+        databaseProperty.setPassword("");
+        databaseProperty.setDrainTimeout(Duration.ofSeconds(5));
+        databaseProperty.getHealthCheck().setEnabled(false);
+        databaseProperty.setSlaveList(Collections.singletonList(slave("slave_1")));
+
+        DatabaseConfig databaseConfig = new DatabaseConfig();
+        ReflectionTestUtils.setField(databaseConfig, "databaseProperty", databaseProperty);
+
+        connectionTracker = new ConnectionTracker(TimeUnit.SECONDS.toNanos(10));
+        replicaHealthChecker = new ReplicaHealthChecker(databaseProperty.getHealthCheck());
+        ReplicationLagMonitor replicationLagMonitor = new ReplicationLagMonitor(databaseProperty.getConsistency());
+
+        DataSource master = databaseConfig.createDataSource("master", url("master"), databaseProperty.getPool());
+        DataSource slave1 = databaseConfig.createDataSource("slave_1", url("slave_1"), databaseProperty.getPool());
+        replicaHealthChecker.register("slave_1", slave1);
+
+        Map<Object, Object> dataSourceMap = new LinkedHashMap<>();
+        dataSourceMap.put("master", connectionTracker.track("master", master));
+        dataSourceMap.put("slave_1", connectionTracker.track("slave_1", slave1));
+        routingDataSource = new ReplicationRoutingDataSource();
+        routingDataSource.setTargetDataSources(dataSourceMap);
+        routingDataSource.setDefaultTargetDataSource(master);
+        routingDataSource.setReplicaHealthChecker(replicaHealthChecker);
+        routingDataSource.afterPropertiesSet();
+
+        replicaTopologyManager = new ReplicaTopologyManager(databaseConfig, databaseProperty, routingDataSource,
+                connectionTracker, replicaHealthChecker, replicationLagMonitor);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        replicaTopologyManager.destroy();
+        routingDataSource.destroy();
+    }
+
+    @Test
+    public void addedReplicaIsWarmedBeforeTakingTraffic() throws Exception {
+        replicaTopologyManager.refresh(Arrays.asList(slave("slave_1"), slave("slave_2")));
+
+        assertThat(routingDataSource.getReplicas()).containsExactly("slave_1", "slave_2");
+        assertThat(replicaHealthChecker.getHealthyReplicas()).containsExactly("slave_1", "slave_2");
+        HikariDataSource slave2 = (HikariDataSource) ((DelegatingDataSource) target("slave_2")).getTargetDataSource();
+        assertThat(slave2.getHikariPoolMXBean().getTotalConnections()).isPositive();
+    }
+
+    @Test
+    public void removedReplicaIsDrainedBeforeClose() throws Exception {
+        DataSource slave1 = target("slave_1");
+        Connection inFlight = slave1.getConnection();
+
+        replicaTopologyManager.refresh(Collections.emptyList());
+        assertThat(routingDataSource.getReplicas()).isEmpty();
+        assertThat(replicaHealthChecker.getHealthyReplicas()).isEmpty();
+
+        HikariDataSource pool = (HikariDataSource) ((DelegatingDataSource) slave1).getTargetDataSource();
+        Thread.sleep(300);
+        assertThat(pool.isClosed()).isFalse();
+
+        inFlight.close();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while(!pool.isClosed() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(pool.isClosed()).isTrue();
+    }
+
+    @Test
+    public void replacedReplicaIsDrainedOnItsOwnConnections() throws Exception {
+        DataSource previous = target("slave_1");
+        Connection inFlight = previous.getConnection();
+
+        DatabaseProperty.Slave moved = slave("slave_1");
+        moved.setUrl(url("slave_1_moved"));
+        replicaTopologyManager.refresh(Collections.singletonList(moved));
+        // a connection of the replacing pool under the same name must not hold up the drain
+        Connection replacing = target("slave_1").getConnection();
+
+        HikariDataSource pool = (HikariDataSource) ((DelegatingDataSource) previous).getTargetDataSource();
+        inFlight.close();
+        long deadline = System.currentTimeMillis() + 2_000;
+        while(!pool.isClosed() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(pool.isClosed()).isTrue();
+        replacing.close();
+    }
+
+    @Test
+    public void replicaSetFollowsTheTopologyFile() throws Exception {
+        Path file = folder.newFile("topology.yml").toPath();
+        write(file, "slave_1", "slave_2");
+        ReplicaTopologyFile topologyFile = new ReplicaTopologyFile(file, Duration.ofMillis(50), replicaTopologyManager);
+        topologyFile.afterPropertiesSet();
+        try {
+            awaitReplicas("slave_1", "slave_2");
+            assertThat(connectionTracker.getTargets()).containsKeys("master", "slave_1", "slave_2");
+
+            write(file, "slave_2");
+            awaitReplicas("slave_2");
+            assertThat(connectionTracker.getTargets()).containsOnlyKeys("master", "slave_2");
+            assertThat(databaseProperty.getSlaveList()).extracting(DatabaseProperty.Slave::getName).containsExactly("slave_2");
+        } finally {
+            topologyFile.destroy();
+        }
+    }
+
+    @Test
+    public void invalidTopologyIsRejectedAsAWhole() {
+        DatabaseProperty.Slave noUrl = slave("slave_2");
+        noUrl.setUrl(null);
+
+        assertThatThrownBy(() -> replicaTopologyManager.refresh(Arrays.asList(slave("slave_1"), noUrl)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> replicaTopologyManager.refresh(Arrays.asList(slave("slave_1"), slave("slave_1"))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(routingDataSource.getReplicas()).containsExactly("slave_1");
+    }
+
+    private void write(Path file, String... names) throws Exception {
+        StringBuilder yaml = new StringBuilder("datasource:\n  slave-list:\n");
+        for(String name : names) {
+            yaml.append("    - name: ").append(name).append("\n      url: ").append(url(name)).append("\n");
+        }
+        Files.write(file, yaml.toString().getBytes(StandardCharsets.UTF_8));
+        // a new modification time even on file systems with one second resolution
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + names.length * 1000L));
+    }
+
+    private void awaitReplicas(String... names) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while(!routingDataSource.getReplicas().equals(Arrays.asList(names)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(routingDataSource.getReplicas()).containsExactly(names);
+    }
+
+    private DataSource target(String name) {
+        return (DataSource) ((Map<?, ?>) ReflectionTestUtils.getField(routingDataSource, "dataSources")).get(name);
+    }
+
+    private DatabaseProperty.Slave slave(String name) {
+        DatabaseProperty.Slave slave = new DatabaseProperty.Slave();
+        slave.setName(name);
+        slave.setUrl(url(name));
+        return slave;
+    }
+
+    private String url(String name) {
+        return "jdbc:h2:mem:topology_" + name + ";DB_CLOSE_DELAY=-1";
+    }
+}
@@ -0,0 +1,91 @@
+package com.kingcjy.replication.config;
+
+import com.kingcjy.replication.config.routing.StatementRoutingDataSourceProxy;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StatementRoutingTests {
+
+    private DataSource master;
+    private DataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setUp() {
+        master = node("statement_master");
+        DataSource slave = node("statement_slave_1");
+
+        Map<Object, Object> dataSourceMap = new LinkedHashMap<>();
+        dataSourceMap.put("master", master);
+        dataSourceMap.put("slave_1", slave);
+
+        ReplicationRoutingDataSource routingDataSource = new ReplicationRoutingDataSource();
+        routingDataSource.setTargetDataSources(dataSourceMap);
+        routingDataSource.setDefaultTargetDataSource(master);
+        routingDataSource.afterPropertiesSet();
+
+        dataSource = new StatementRoutingDataSourceProxy(new LazyConnectionDataSourceProxy(routingDataSource));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Test
+    public void plainSelectGoesToReplica() {
+        assertThat(jdbcTemplate.queryForObject("select name from node", String.class)).isEqualTo("statement_slave_1");
+        assertThat(jdbcTemplate.queryForObject("/* comment */ SELECT name FROM node WHERE 1 = ?", String.class, 1))
+                .isEqualTo("statement_slave_1");
+    }
+
+    @Test
+    public void writesAndLockingReadsStayOnMaster() {
+        assertThat(jdbcTemplate.queryForObject("select name from node for update", String.class)).isEqualTo("statement_master");
+        assertThat(jdbcTemplate.update("update node set name = name")).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("call select name from node", String.class)).isEqualTo("statement_master");
+    }
+
+    @Test
+    public void readWriteTransactionStartingWithSelectStaysOnMaster() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        String read = transactionTemplate.execute(status -> {
+            String name = jdbcTemplate.queryForObject("select name from node", String.class);
+            jdbcTemplate.update("update node set name = ?", name + "_updated");
+            return name;
+        });
+
+        assertThat(read).isEqualTo("statement_master");
+        assertThat(new JdbcTemplate(master).queryForObject("select name from node", String.class))
+                .isEqualTo("statement_master_updated");
+    }
+
+    @Test
+    public void classifiesStatements() {
+        assertThat(StatementRoutingDataSourceProxy.isReadOnlyStatement("select * from product")).isTrue();
+        assertThat(StatementRoutingDataSourceProxy.isReadOnlyStatement("\n  /* load Product */ select * from product")).isTrue();
+        assertThat(StatementRoutingDataSourceProxy.isReadOnlyStatement("select * from product where id = ? for update")).isFalse();
+        assertThat(StatementRoutingDataSourceProxy.isReadOnlyStatement("select * from product lock in share mode")).isFalse();
+        assertThat(StatementRoutingDataSourceProxy.isReadOnlyStatement("select * from product where title = 'walk into'")).isTrue();
+        assertThat(StatementRoutingDataSourceProxy.isReadOnlyStatement("select count(*) into @total from product")).isFalse();
+        assertThat(StatementRoutingDataSourceProxy.isReadOnlyStatement("select * into outfile '/tmp/p' from product")).isFalse();
+        assertThat(StatementRoutingDataSourceProxy.isReadOnlyStatement("insert into product values (1)")).isFalse();
+        assertThat(StatementRoutingDataSourceProxy.isReadOnlyStatement("update product set title = ?")).isFalse();
+    }
+
+    private DataSource node(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("create table if not exists node (name varchar(64))");
+        template.execute("delete from node");
+        template.update("insert into node values (?)", name);
+        return dataSource;
+    }
+}
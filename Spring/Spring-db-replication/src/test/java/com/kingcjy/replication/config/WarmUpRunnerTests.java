@@ -0,0 +1,37 @@
+package com.kingcjy.replication.config;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"datasource.warm-up.enabled=true", "datasource.warm-up.query-iterations=5", "datasource.warm-up.request-iterations=5"})
+@ActiveProfiles("h2")
+public class WarmUpRunnerTests {
+
+    @Autowired
+    private WarmUpRunner warmUpRunner;
+    @Autowired
+    private WarmUpHealthIndicator warmUpHealthIndicator;
+
+    @Test
+    public void reportsReadyOnceEveryPhaseHasRun() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!warmUpRunner.isDone() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+
+        assertThat(warmUpHealthIndicator.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(warmUpRunner.getFailures()).isZero();
+        assertThat(warmUpRunner.getPhaseMillis()).containsKeys("connections", "queries", "requests", "total");
+    }
+}
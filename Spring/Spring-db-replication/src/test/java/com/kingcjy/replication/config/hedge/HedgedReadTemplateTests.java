@@ -0,0 +1,168 @@
+package com.kingcjy.replication.config.hedge;
+
+import com.kingcjy.replication.config.DatabaseProperty;
+import com.kingcjy.replication.config.ReplicationRoutingDataSource;
+import com.kingcjy.replication.config.routing.ConnectionTracker;
+import com.kingcjy.replication.config.routing.ReplicaContextHolder;
+import com.kingcjy.replication.config.routing.WritePositionHolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HedgedReadTemplateTests {
+
+    private ReplicationRoutingDataSource routingDataSource;
+    private DataSource dataSource;
+    private HedgedReadTemplate hedgedReadTemplate;
+
+    @Before
+    public void setUp() {
+        ConnectionTracker connectionTracker = new ConnectionTracker(Duration.ofSeconds(1).toNanos());
+        Map<Object, Object> dataSourceMap = new LinkedHashMap<>();
+        dataSourceMap.put("master", node("master"));
+        dataSourceMap.put("slave_1", connectionTracker.track("slave_1", node("slave_1")));
+        dataSourceMap.put("slave_2", connectionTracker.track("slave_2", node("slave_2")));
+
+        routingDataSource = new ReplicationRoutingDataSource();
+        routingDataSource.setTargetDataSources(dataSourceMap);
+        routingDataSource.setDefaultTargetDataSource(dataSourceMap.get("master"));
+        routingDataSource.afterPropertiesSet();
+        dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    @After
+    public void tearDown() {
+        hedgedReadTemplate.destroy();
+    }
+
+    @Test
+    public void slowReplicaIsHedged() throws Throwable {
+        hedgedReadTemplate = template(1.0, 1);
+
+        long start = System.nanoTime();
+        for(int i = 0; i < 20; i++) {
+            assertThat(hedgedReadTemplate.execute(this::slowOnSlave1)).isEqualTo("slave_2");
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(hedgedReadTemplate.getHedges()).isEqualTo(10);
+        assertThat(hedgedReadTemplate.getHedgeWins()).isEqualTo(10);
+        assertThat(elapsedMillis).isLessThan(10 * 500);
+    }
+
+    @Test
+    public void hedgesAreCappedByBudget() throws Throwable {
+        hedgedReadTemplate = template(0.1, 1);
+
+        for(int i = 0; i < 20; i++) {
+            hedgedReadTemplate.execute(this::slowOnSlave1);
+        }
+
+        assertThat(hedgedReadTemplate.getReads()).isEqualTo(20);
+        assertThat(hedgedReadTemplate.getHedges()).isLessThanOrEqualTo(1 + 2);
+    }
+
+    @Test
+    public void losingReadIsCancelled() throws Throwable {
+        hedgedReadTemplate = template(1.0, 1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+
+        for(int i = 0; i < 2; i++) {
+            assertThat(hedgedReadTemplate.execute(() -> slowQueryOnSlave1(cancelled))).isEqualTo("slave_2");
+        }
+
+        assertThat(hedgedReadTemplate.getHedges()).isPositive();
+        assertThat(cancelled.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void readRunOnTheCallerKeepsItsWritePosition() throws Throwable {
+        hedgedReadTemplate = template(1.0, 1, 1);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        HedgedReadCallback<String> blocked = () -> {
+            running.countDown();
+            release.await();
+            return ReplicaContextHolder.getReplica();
+        };
+        Runnable blockedRead = () -> {
+            try {
+                hedgedReadTemplate.execute(blocked);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            // one read runs and one waits in the queue, so the pool rejects the next one
+            callers.execute(blockedRead);
+            assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+            callers.execute(blockedRead);
+            Thread.sleep(100);
+
+            WritePositionHolder.set(42);
+            assertThat(hedgedReadTemplate.execute(ReplicaContextHolder::getReplica)).startsWith("slave_");
+            assertThat(WritePositionHolder.get()).isEqualTo(42);
+            assertThat(ReplicaContextHolder.getReplica()).isNull();
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+            WritePositionHolder.clear();
+        }
+    }
+
+    private String slowQueryOnSlave1(CountDownLatch cancelled) {
+        String replica = ReplicaContextHolder.getReplica();
+        String sql = "slave_1".equals(replica) ? "select sum(x) from system_range(1, 2000000000)" : "select 1";
+        try {
+            new JdbcTemplate(dataSource).queryForObject(sql, Long.class);
+        } catch (DataAccessException e) {
+            cancelled.countDown();
+            throw e;
+        }
+        return replica;
+    }
+
+    private String slowOnSlave1() throws InterruptedException {
+        String replica = ReplicaContextHolder.getReplica();
+        if("slave_1".equals(replica)) {
+            Thread.sleep(500);
+        }
+        return replica;
+    }
+
+    private HedgedReadTemplate template(double budget, int maxBurst) {
+        return template(budget, maxBurst, 4);
+    }
+
+    private HedgedReadTemplate template(double budget, int maxBurst, int poolSize) {
+        DatabaseProperty.Hedge hedge = new DatabaseProperty.Hedge();
+        hedge.setEnabled(true);
+        hedge.setMinDelay(Duration.ofMillis(20));
+        hedge.setBudget(budget);
+        hedge.setMaxBurst(maxBurst);
+        hedge.setPoolSize(poolSize);
+        return new HedgedReadTemplate(routingDataSource,
+                new DataSourceTransactionManager(dataSource), hedge);
+    }
+
+    private DriverManagerDataSource node(String name) {
+        return new DriverManagerDataSource("jdbc:h2:mem:hedge_" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+}
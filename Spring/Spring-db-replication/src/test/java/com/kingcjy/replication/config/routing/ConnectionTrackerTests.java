@@ -0,0 +1,158 @@
+package com.kingcjy.replication.config.routing;
+
+import com.kingcjy.replication.config.DatabaseProperty;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ConnectionTrackerTests {
+
+    private final AtomicBoolean up = new AtomicBoolean(true);
+    private final DatabaseProperty.CircuitBreaker circuitBreaker = new DatabaseProperty.CircuitBreaker();
+    private ConnectionTracker connectionTracker;
+    private DataSource slave1;
+
+    @Before
+    public void setUp() throws Exception {
+        DatabaseProperty.Bulkhead bulkhead = new DatabaseProperty.Bulkhead();
+        bulkhead.setMaxConcurrent(2);
+        bulkhead.setMaxWait(Duration.ofMillis(10));
+
+        circuitBreaker.setWindow(10);
+        circuitBreaker.setMinimumCalls(4);
+        circuitBreaker.setOpenDuration(Duration.ofMillis(200));
+        circuitBreaker.setHalfOpenCalls(1);
+
+        connectionTracker = new ConnectionTracker(TimeUnit.SECONDS.toNanos(10), bulkhead, circuitBreaker);
+
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenAnswer(invocation -> {
+            if(!up.get()) {
+                throw new SQLTransientConnectionException("connection refused");
+            }
+            Connection connection = mock(Connection.class);
+            when(connection.createStatement()).thenReturn(mock(Statement.class));
+            return connection;
+        });
+        slave1 = connectionTracker.track("slave_1", target);
+        connectionTracker.track("slave_2", target);
+    }
+
+    @Test
+    public void bulkheadCapsConcurrentConnections() throws Exception {
+        Connection first = slave1.getConnection();
+        Connection second = slave1.getConnection();
+
+        assertThat(connectionTracker.available(Arrays.asList("slave_1", "slave_2"))).containsExactly("slave_2");
+        assertThatThrownBy(slave1::getConnection).hasMessageContaining("bulkhead");
+
+        first.close();
+        second.close();
+        assertThat(connectionTracker.isAvailable("slave_1")).isTrue();
+    }
+
+    @Test
+    public void circuitBreakerOpensOnFailuresAndRecovers() throws Exception {
+        up.set(false);
+        for(int i = 0; i < 4; i++) {
+            assertThatThrownBy(slave1::getConnection).isInstanceOf(SQLException.class);
+        }
+
+        assertThat(connectionTracker.getTargets().get("slave_1").getCircuitBreaker().getState())
+                .isEqualTo(TargetCircuitBreaker.State.OPEN);
+        assertThat(connectionTracker.available(Arrays.asList("slave_1", "slave_2"))).containsExactly("slave_2");
+        assertThatThrownBy(slave1::getConnection).hasMessageContaining("circuit breaker");
+
+        up.set(true);
+        Thread.sleep(250);
+        assertThat(connectionTracker.isAvailable("slave_1")).isTrue();
+        try (Connection connection = slave1.getConnection()) {
+            connection.createStatement().execute("select 1");
+        }
+        assertThat(connectionTracker.getTargets().get("slave_1").getCircuitBreaker().getState())
+                .isEqualTo(TargetCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void halfOpenTrialsAreCountedPerConnection() throws Exception {
+        circuitBreaker.setHalfOpenCalls(2);
+        up.set(false);
+        for(int i = 0; i < 4; i++) {
+            assertThatThrownBy(slave1::getConnection).isInstanceOf(SQLException.class);
+        }
+
+        up.set(true);
+        Thread.sleep(250);
+        // one trial runs several statements, the other none, each is one call
+        try (Connection connection = slave1.getConnection()) {
+            connection.createStatement().execute("select 1");
+            connection.createStatement().execute("select 2");
+            connection.createStatement().execute("select 3");
+        }
+        assertThat(connectionTracker.getTargets().get("slave_1").getCircuitBreaker().getState())
+                .isEqualTo(TargetCircuitBreaker.State.HALF_OPEN);
+        slave1.getConnection().close();
+
+        assertThat(connectionTracker.getTargets().get("slave_1").getCircuitBreaker().getState())
+                .isEqualTo(TargetCircuitBreaker.State.CLOSED);
+        slave1.getConnection().close();
+    }
+
+    @Test
+    public void halfOpenPermitGivenBackCanBeTakenAgain() throws Exception {
+        circuitBreaker.setHalfOpenCalls(2);
+        up.set(false);
+        for(int i = 0; i < 4; i++) {
+            assertThatThrownBy(slave1::getConnection).isInstanceOf(SQLException.class);
+        }
+        Thread.sleep(250);
+
+        TargetCircuitBreaker breaker = connectionTracker.getTargets().get("slave_1").getCircuitBreaker();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger permitted = new AtomicInteger();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for(int i = 0; i < 200; i++) {
+                futures.add(executor.submit(() -> {
+                    if(breaker.tryAcquirePermission()) {
+                        permitted.incrementAndGet();
+                    }
+                }));
+            }
+            for(Future<?> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(permitted.get()).isEqualTo(2);
+
+        // one trial never reached the target, the permit it gives back goes to the next caller
+        breaker.releasePermission();
+        assertThat(breaker.isCallPermitted()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        breaker.onSuccess(0);
+        breaker.onSuccess(0);
+        assertThat(breaker.getState()).isEqualTo(TargetCircuitBreaker.State.CLOSED);
+    }
+}
@@ -0,0 +1,111 @@
+package com.kingcjy.replication.config.routing;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class JdbcMetricsTests {
+
+    private static final String SELECT = "select * from product where id = ?";
+    private static final String UPDATE = "update product set contents = ? where id = ?";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private DataSource slave1;
+
+    @Before
+    public void setUp() throws Exception {
+        ConnectionTracker connectionTracker = new ConnectionTracker(TimeUnit.SECONDS.toNanos(10));
+        connectionTracker.setMeterRegistry(registry);
+
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenAnswer(invocation -> {
+            ResultSet resultSet = mock(ResultSet.class);
+            when(resultSet.next()).thenReturn(true, true, true, false);
+            PreparedStatement select = mock(PreparedStatement.class);
+            when(select.executeQuery()).thenReturn(resultSet);
+            PreparedStatement update = mock(PreparedStatement.class);
+            when(update.executeBatch()).thenReturn(new int[]{1, 1, PreparedStatement.SUCCESS_NO_INFO});
+
+            Connection connection = mock(Connection.class);
+            when(connection.prepareStatement(anyString())).thenAnswer(prepare ->
+                    SELECT.equals(prepare.getArgument(0)) ? select : update);
+            return connection;
+        });
+        slave1 = connectionTracker.track("slave_1", target);
+    }
+
+    @Test
+    public void recordsAcquireAndStatementTimePerTarget() throws Exception {
+        try (Connection connection = slave1.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT)) {
+            statement.executeQuery().close();
+        }
+
+        assertThat(registry.get("replication.connection.acquire").tag("target", "slave_1").timer().count())
+                .isEqualTo(1);
+        assertThat(registry.get("replication.statement").tag("target", "slave_1").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void recordsRowsReadAndAffected() throws Exception {
+        try (Connection connection = slave1.getConnection()) {
+            try (ResultSet resultSet = connection.prepareStatement(SELECT).executeQuery()) {
+                while (resultSet.next()) {
+                    // read every row
+                }
+            }
+            connection.prepareStatement(UPDATE).executeBatch();
+        }
+
+        assertThat(registry.get("replication.statement.rows").tag("target", "slave_1").summary().count())
+                .isEqualTo(2);
+        assertThat(registry.get("replication.statement.rows").tag("target", "slave_1").summary().totalAmount())
+                .isEqualTo(5);
+    }
+
+    @Test
+    public void countsRepeatedStatementsOnlyWhileRecording() throws Exception {
+        try (Connection connection = slave1.getConnection()) {
+            connection.prepareStatement(SELECT).executeQuery();
+
+            StatementRecorder.begin();
+            for(int i = 0; i < 3; i++) {
+                connection.prepareStatement(SELECT).executeQuery();
+            }
+            for(int i = 0; i < 3; i++) {
+                connection.prepareStatement(UPDATE).executeBatch();
+            }
+            Map<String, Integer> statements = StatementRecorder.end();
+
+            // batches of a bulk write are not an N+1
+            assertThat(statements).containsEntry(SELECT, 3).hasSize(1);
+        }
+        assertThat(StatementRecorder.end()).isEmpty();
+    }
+
+    @Test
+    public void countsRouteDecisionsPerTargetAndReason() {
+        RouteMetrics routeMetrics = new RouteMetrics(registry);
+        routeMetrics.record("slave_1", RouteMetrics.Reason.SELECTED);
+        routeMetrics.record("slave_1", RouteMetrics.Reason.SELECTED);
+        routeMetrics.record("master", RouteMetrics.Reason.FALLBACK);
+
+        assertThat(registry.get("replication.route").tags("target", "slave_1", "reason", "selected").counter().count())
+                .isEqualTo(2);
+        assertThat(registry.get("replication.route").tags("target", "master", "reason", "fallback").counter().count())
+                .isEqualTo(1);
+    }
+}
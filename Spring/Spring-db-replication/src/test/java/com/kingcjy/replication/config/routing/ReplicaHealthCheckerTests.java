@@ -0,0 +1,89 @@
+package com.kingcjy.replication.config.routing;
+
+import com.kingcjy.replication.config.DatabaseProperty;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReplicaHealthCheckerTests {
+
+    private final AtomicBoolean slave2Up = new AtomicBoolean(true);
+    private final AtomicBoolean slave2Hung = new AtomicBoolean(false);
+    private ReplicaHealthChecker replicaHealthChecker;
+
+    @Before
+    public void setUp() throws Exception {
+        DatabaseProperty.HealthCheck healthCheck = new DatabaseProperty.HealthCheck();
+        healthCheck.setInterval(Duration.ofMillis(10));
+        healthCheck.setFailureThreshold(2);
+        healthCheck.setSuccessThreshold(3);
+        healthCheck.setTimeout(Duration.ofMillis(50));
+
+        replicaHealthChecker = new ReplicaHealthChecker(healthCheck);
+        replicaHealthChecker.register("slave_1", dataSource(new AtomicBoolean(true)));
+        replicaHealthChecker.register("slave_2", dataSource(slave2Up));
+        replicaHealthChecker.afterPropertiesSet();
+    }
+
+    @After
+    public void tearDown() {
+        replicaHealthChecker.destroy();
+    }
+
+    @Test
+    public void failingReplicaIsEvictedAndReinstated() throws Exception {
+        assertThat(replicaHealthChecker.getHealthyReplicas()).containsExactly("slave_1", "slave_2");
+
+        slave2Up.set(false);
+        awaitHealthy("slave_1");
+        assertThat(replicaHealthChecker.isHealthy("slave_2")).isFalse();
+
+        slave2Up.set(true);
+        awaitHealthy("slave_1", "slave_2");
+    }
+
+    @Test
+    public void hungProbeCountsAsFailedAfterTheTimeout() throws Exception {
+        slave2Hung.set(true);
+        awaitHealthy("slave_1");
+
+        slave2Hung.set(false);
+        awaitHealthy("slave_1", "slave_2");
+    }
+
+    private void awaitHealthy(String... keys) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while(!replicaHealthChecker.getHealthyReplicas().equals(Arrays.asList(keys))) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private DataSource dataSource(AtomicBoolean up) throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenAnswer(invocation -> {
+            while(up == slave2Up && slave2Hung.get()) {
+                Thread.sleep(10);
+            }
+            if(!up.get()) {
+                throw new SQLException("connection refused");
+            }
+            Connection connection = mock(Connection.class);
+            when(connection.isValid(anyInt())).thenReturn(true);
+            return connection;
+        });
+        return dataSource;
+    }
+}
@@ -0,0 +1,168 @@
+package com.kingcjy.replication.config.routing;
+
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReplicaSelectorTests {
+
+    private static final int THREADS = 200;
+    private static final int SELECTS_PER_THREAD = 3_000;
+
+    private final List<String> replicas = Collections.unmodifiableList(Arrays.asList("slave_1", "slave_2", "slave_3"));
+
+    @Test
+    public void roundRobinSpreadsEvenlyUnderContention() throws Exception {
+        Map<String, LongAdder> counts = selectConcurrently(new RoundRobinReplicaSelector());
+
+        long expected = (long) THREADS * SELECTS_PER_THREAD / replicas.size();
+        replicas.forEach(key -> assertThat(counts.get(key).sum()).isEqualTo(expected));
+    }
+
+    @Test
+    public void weightedRoundRobinFollowsWeights() throws Exception {
+        Map<String, Integer> weights = new HashMap<>();
+        weights.put("slave_1", 1);
+        weights.put("slave_2", 2);
+        weights.put("slave_3", 3);
+
+        Map<String, LongAdder> counts = selectConcurrently(new WeightedRoundRobinReplicaSelector(weights::get));
+
+        long unit = (long) THREADS * SELECTS_PER_THREAD / 6;
+        assertThat(counts.get("slave_1").sum()).isEqualTo(unit);
+        assertThat(counts.get("slave_2").sum()).isEqualTo(unit * 2);
+        assertThat(counts.get("slave_3").sum()).isEqualTo(unit * 3);
+    }
+
+    @Test
+    public void weightedRoundRobinRebuildsScheduleOnlyWhenReplicasOrWeightsChange() {
+        Map<String, Integer> weights = new HashMap<>();
+        replicas.forEach(key -> weights.put(key, 1));
+        WeightedRoundRobinReplicaSelector selector = new WeightedRoundRobinReplicaSelector(weights::get);
+
+        selector.select(replicas);
+        Object schedule = ReflectionTestUtils.getField(selector, "schedule");
+        selector.select(new ArrayList<>(replicas));
+        assertThat(ReflectionTestUtils.getField(selector, "schedule")).isSameAs(schedule);
+
+        weights.put("slave_3", 5);
+        selector.select(new ArrayList<>(replicas));
+        assertThat(ReflectionTestUtils.getField(selector, "schedule")).isNotSameAs(schedule);
+        selector.select(replicas.subList(0, 2));
+        assertThat(ReflectionTestUtils.getField(selector, "schedule")).isNotSameAs(schedule);
+    }
+
+    @Test
+    public void randomTwoChoicesStaysBalanced() throws Exception {
+        Map<String, LongAdder> counts = selectConcurrently(new RandomTwoChoicesReplicaSelector());
+
+        long expected = (long) THREADS * SELECTS_PER_THREAD / replicas.size();
+        replicas.forEach(key -> assertThat(counts.get(key).sum()).isBetween(expected * 95 / 100, expected * 105 / 100));
+    }
+
+    @Test
+    public void leastOutstandingAvoidsBusyReplica() throws Exception {
+        ConnectionTracker connectionTracker = new ConnectionTracker(TimeUnit.SECONDS.toNanos(10));
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+
+        DataSource slave1 = connectionTracker.track("slave_1", target);
+        Connection first = slave1.getConnection();
+        Connection second = slave1.getConnection();
+        assertThat(connectionTracker.getOutstanding("slave_1")).isEqualTo(2);
+
+        ReplicaSelector selector = new LeastOutstandingReplicaSelector(connectionTracker::getOutstanding);
+        for(int i = 0; i < 10; i++) {
+            assertThat(selector.select(replicas)).isNotEqualTo("slave_1");
+        }
+
+        first.close();
+        first.close();
+        second.close();
+        assertThat(connectionTracker.getOutstanding("slave_1")).isZero();
+    }
+
+    @Test
+    public void latencyAwarePrefersFastReplicaAndRecovers() throws Exception {
+        Map<String, Double> latency = new ConcurrentHashMap<>();
+        latency.put("slave_1", 50_000_000.0);
+        latency.put("slave_2", 1_000_000.0);
+        latency.put("slave_3", 1_000_000.0);
+        ReplicaSelector selector = new LatencyAwareReplicaSelector(latency::get, 1_000_000);
+
+        Map<String, LongAdder> counts = selectConcurrently(selector);
+        assertThat(counts.get("slave_1").sum()).isLessThan(counts.get("slave_2").sum() / 10);
+        assertThat(counts.get("slave_1").sum()).isPositive();
+
+        latency.put("slave_1", 1_000_000.0);
+        counts = selectConcurrently(selector);
+        long expected = (long) THREADS * SELECTS_PER_THREAD / replicas.size();
+        assertThat(counts.get("slave_1").sum()).isBetween(expected * 95 / 100, expected * 105 / 100);
+    }
+
+    @Test
+    public void latencyEwmaDecaysWhenIdle() throws Exception {
+        LatencyEwma ewma = new LatencyEwma(TimeUnit.MILLISECONDS.toNanos(20));
+        for(int i = 0; i < 10; i++) {
+            ewma.record(TimeUnit.MILLISECONDS.toNanos(100));
+            Thread.sleep(5);
+        }
+        double slow = ewma.getNanos();
+        assertThat(slow).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(50));
+
+        Thread.sleep(200);
+        assertThat(ewma.getNanos()).isLessThan(slow / 100);
+    }
+
+    @Test
+    public void emptyReplicaListSelectsNothing() {
+        assertThat(new RoundRobinReplicaSelector().select(Collections.emptyList())).isNull();
+        assertThat(new WeightedRoundRobinReplicaSelector(key -> 1).select(Collections.emptyList())).isNull();
+        assertThat(new RandomTwoChoicesReplicaSelector().select(Collections.emptyList())).isNull();
+        assertThat(new LeastOutstandingReplicaSelector(key -> 0).select(Collections.emptyList())).isNull();
+        assertThat(new LatencyAwareReplicaSelector(key -> 0, 1).select(Collections.emptyList())).isNull();
+    }
+
+    private Map<String, LongAdder> selectConcurrently(ReplicaSelector selector) throws InterruptedException {
+        Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+        replicas.forEach(key -> counts.put(key, new LongAdder()));
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        for(int i = 0; i < THREADS; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for(int j = 0; j < SELECTS_PER_THREAD; j++) {
+                    counts.get(selector.select(replicas)).increment();
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        return counts;
+    }
+}
@@ -0,0 +1,81 @@
+package com.kingcjy.replication.service;
+
+import com.kingcjy.replication.entity.Product;
+import com.kingcjy.replication.entity.ProductRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("h2")
+public class ProductBulkOperationTests {
+
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private List<Long> ids = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        for(String title : Arrays.asList("apple", "apricot", "a_b", "banana")) {
+            ids.add(productService.save(Product.builder().title(title).contents("old").build()).getId());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        productRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void updatesByIdsInOneStatementAndEvictsCachedEntities() {
+        productRepository.findById(ids.get(0));
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long statements = statistics.getPrepareStatementCount();
+
+        int updated = productService.bulkUpdateContents(ids.subList(0, 3), "new");
+
+        assertThat(updated).isEqualTo(3);
+        assertThat(statistics.getPrepareStatementCount() - statements).isEqualTo(1);
+        assertThat(productRepository.findById(ids.get(0)).get().getContents()).isEqualTo("new");
+        assertThat(productRepository.findById(ids.get(3)).get().getContents()).isEqualTo("old");
+    }
+
+    @Test
+    public void updatesByTitlePrefixTreatingWildcardsLiterally() {
+        assertThat(productService.bulkUpdateContentsByTitlePrefix("ap", "new")).isEqualTo(2);
+        assertThat(productService.bulkUpdateContentsByTitlePrefix("a_", "newer")).isEqualTo(1);
+
+        assertThat(productRepository.findById(ids.get(2)).get().getContents()).isEqualTo("newer");
+        assertThat(productRepository.findById(ids.get(3)).get().getContents()).isEqualTo("old");
+    }
+
+    @Test
+    public void deletesByIds() {
+        productRepository.findById(ids.get(0));
+
+        assertThat(productService.bulkDelete(ids.subList(0, 2))).isEqualTo(2);
+
+        assertThat(productRepository.findById(ids.get(0))).isEmpty();
+        assertThat(productRepository.count()).isEqualTo(2);
+    }
+}
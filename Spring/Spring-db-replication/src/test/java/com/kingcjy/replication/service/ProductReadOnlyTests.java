@@ -0,0 +1,105 @@
+package com.kingcjy.replication.service;
+
+import com.kingcjy.replication.dto.ProductDto;
+import com.kingcjy.replication.dto.ProductRequestDto;
+import com.kingcjy.replication.entity.Product;
+import com.kingcjy.replication.entity.ProductRepository;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("h2")
+public class ProductReadOnlyTests {
+
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    public interface ProductTitle {
+        String getTitle();
+    }
+
+    @Before
+    public void setUp() {
+        List<ProductRequestDto> products = new ArrayList<>();
+        for(int i = 0; i < 3; i++) {
+            ProductRequestDto product = new ProductRequestDto();
+            product.setTitle("title" + i);
+            products.add(product);
+        }
+        productService.saveAll(products);
+
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @After
+    public void tearDown() {
+        productRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void exportPicksHowToStreamFromTheReplicaConnection() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        assertThat(productService.exportProducts(outputStream)).isEqualTo(3);
+        assertThat(new String(outputStream.toByteArray(), StandardCharsets.UTF_8)).contains("\"title\":\"title2\"");
+    }
+
+    @Test
+    public void readOnlyTransactionSkipsFlushAndSnapshots() {
+        readOnlyTransaction.execute(status -> {
+            Session session = entityManager.unwrap(Session.class);
+            assertThat(session.isDefaultReadOnly()).isTrue();
+            assertThat(session.getHibernateFlushMode()).isEqualTo(FlushMode.MANUAL);
+            assertThat(session.doReturningWork(Connection::isReadOnly)).isTrue();
+
+            List<Product> products = productRepository.findAll();
+            assertThat(products).allMatch(session::isReadOnly);
+            return null;
+        });
+    }
+
+    @Test
+    public void projectionsDoNotHydrateEntities() {
+        readOnlyTransaction.execute(status -> {
+            Session session = entityManager.unwrap(Session.class);
+
+            List<ProductDto> products = productRepository.findAllProjectedBy(ProductDto.class);
+            List<ProductTitle> titles = productRepository.findAllProjectedBy(ProductTitle.class);
+
+            assertThat(products).extracting(ProductDto::getTitle).containsExactlyInAnyOrder("title0", "title1", "title2");
+            assertThat(titles).extracting(ProductTitle::getTitle).containsExactlyInAnyOrder("title0", "title1", "title2");
+            assertThat(session.getStatistics().getEntityCount()).isZero();
+            return null;
+        });
+    }
+}
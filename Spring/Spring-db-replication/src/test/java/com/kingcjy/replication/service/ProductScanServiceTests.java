@@ -0,0 +1,96 @@
+package com.kingcjy.replication.service;
+
+import com.kingcjy.replication.config.DatabaseProperty;
+import com.kingcjy.replication.dto.ProductDto;
+import com.kingcjy.replication.dto.ProductRequestDto;
+import com.kingcjy.replication.entity.ProductRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("h2")
+public class ProductScanServiceTests {
+
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private ProductScanService productScanService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private DatabaseProperty databaseProperty;
+
+    private long sliceSize;
+
+    @Before
+    public void setUp() {
+        sliceSize = databaseProperty.getScan().getSliceSize();
+        databaseProperty.getScan().setSliceSize(3);
+
+        List<ProductRequestDto> products = new ArrayList<>();
+        for(int i = 0; i < 10; i++) {
+            ProductRequestDto product = new ProductRequestDto();
+            product.setTitle("title" + i);
+            products.add(product);
+        }
+        productService.saveAll(products);
+    }
+
+    @After
+    public void tearDown() {
+        databaseProperty.getScan().setSliceSize(sliceSize);
+        productRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void mergesSlicesInIdOrder() {
+        try (Stream<ProductDto> products = productScanService.scanAll()) {
+            assertThat(products.map(ProductDto::getTitle).collect(Collectors.toList()))
+                    .containsExactly("title0", "title1", "title2", "title3", "title4",
+                            "title5", "title6", "title7", "title8", "title9");
+        }
+    }
+
+    @Test
+    public void scansOnlyTheRequestedRange() {
+        long minId = productRepository.findMinId();
+
+        try (Stream<ProductDto> products = productScanService.scan(minId + 2, minId + 7)) {
+            assertThat(products.map(ProductDto::getId).collect(Collectors.toList()))
+                    .containsExactly(minId + 2, minId + 3, minId + 4, minId + 5, minId + 6);
+        }
+    }
+
+    @Test
+    public void narrowsTheRangeToExistingIds() {
+        try (Stream<ProductDto> products = productScanService.scan(0, Long.MAX_VALUE)) {
+            assertThat(products.count()).isEqualTo(10);
+        }
+        try (Stream<ProductDto> products = productScanService.scan(Long.MAX_VALUE - 1, Long.MAX_VALUE)) {
+            assertThat(products.count()).isZero();
+        }
+    }
+
+    @Test
+    public void sliceSizeBeyondTheLastIdDoesNotOverflow() {
+        databaseProperty.getScan().setSliceSize(Long.MAX_VALUE);
+
+        try (Stream<ProductDto> products = productScanService.scanAll()) {
+            assertThat(products.count()).isEqualTo(10);
+        }
+    }
+}
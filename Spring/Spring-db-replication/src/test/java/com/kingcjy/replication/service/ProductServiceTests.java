@@ -0,0 +1,129 @@
+package com.kingcjy.replication.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kingcjy.replication.dto.ProductDto;
+import com.kingcjy.replication.dto.ProductPageDto;
+import com.kingcjy.replication.entity.Product;
+import com.kingcjy.replication.entity.ProductRepository;
+import org.hibernate.Session;
+import org.hibernate.jdbc.ReturningWork;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProductServiceTests {
+
+    @Mock
+    private ProductRepository productRepository;
+    @Mock
+    private EntityManager entityManager;
+    @InjectMocks
+    private ProductService productService;
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(productService, "objectMapper", new ObjectMapper());
+    }
+
+    @Test
+    public void cursorPointsAtLastRowOfFullPage() {
+        when(productRepository.findProductsAfter(eq(0L), eq(PageRequest.of(0, 3))))
+                .thenReturn(productDtos(1, 2, 3));
+
+        ProductPageDto page = productService.getProducts(null, 2);
+
+        assertThat(page.getContent()).extracting(ProductDto::getId).containsExactly(1L, 2L);
+        assertThat(ProductCursor.decode(page.getNextCursor())).isEqualTo(2L);
+    }
+
+    @Test
+    public void lastPageHasNoCursor() {
+        when(productRepository.findProductsAfter(eq(2L), eq(PageRequest.of(0, 3))))
+                .thenReturn(productDtos(3));
+
+        ProductPageDto page = productService.getProducts(ProductCursor.encode(2L), 2);
+
+        assertThat(page.getContent()).extracting(ProductDto::getId).containsExactly(3L);
+        assertThat(page.getNextCursor()).isNull();
+        verify(productRepository).findProductsAfter(eq(2L), eq(PageRequest.of(0, 3)));
+    }
+
+    @Test
+    public void rejectsForeignCursor() {
+        assertThatThrownBy(() -> productService.getProducts("bm90LWEtY3Vyc29y", 2))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> productService.getProducts("%%%", 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void exportsOneJsonLinePerProductAndDetachesThem() throws Exception {
+        databaseProductName("H2");
+        List<Product> products = products(1, 2);
+        when(productRepository.streamAll()).thenReturn(products.stream());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        long count = productService.exportProducts(outputStream);
+
+        assertThat(count).isEqualTo(2);
+        assertThat(new String(outputStream.toByteArray(), StandardCharsets.UTF_8)).isEqualTo(
+                "{\"id\":1,\"title\":\"title1\",\"contents\":null}\n" +
+                "{\"id\":2,\"title\":\"title2\",\"contents\":null}\n");
+        verify(entityManager, times(1)).detach(products.get(0));
+        verify(entityManager, times(1)).detach(products.get(1));
+    }
+
+    @Test
+    public void exportStreamsRowByRowFromMySql() throws Exception {
+        databaseProductName("MySQL");
+        when(productRepository.streamAllFromMySql()).thenReturn(products(1).stream());
+
+        assertThat(productService.exportProducts(new ByteArrayOutputStream())).isEqualTo(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void databaseProductName(String name) {
+        Session session = mock(Session.class);
+        when(entityManager.unwrap(Session.class)).thenReturn(session);
+        when(session.doReturningWork(any(ReturningWork.class))).thenReturn(name);
+    }
+
+    private List<ProductDto> productDtos(long... ids) {
+        List<ProductDto> products = new ArrayList<>();
+        for(long id : ids) {
+            products.add(new ProductDto(id, "title" + id, null));
+        }
+        return products;
+    }
+
+    private List<Product> products(long... ids) {
+        List<Product> products = new ArrayList<>();
+        for(long id : ids) {
+            Product product = Product.builder().title("title" + id).build();
+            ReflectionTestUtils.setField(product, "id", id);
+            products.add(product);
+        }
+        return products;
+    }
+}
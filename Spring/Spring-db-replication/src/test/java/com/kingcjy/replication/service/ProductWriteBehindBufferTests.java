@@ -0,0 +1,69 @@
+package com.kingcjy.replication.service;
+
+import com.kingcjy.replication.entity.Product;
+import com.kingcjy.replication.entity.ProductRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "datasource.write-behind.enabled=true",
+        "datasource.write-behind.window=1h"
+})
+@ActiveProfiles("h2")
+public class ProductWriteBehindBufferTests {
+
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private ProductWriteBehindBuffer productWriteBehindBuffer;
+
+    private Long first;
+    private Long second;
+
+    @Before
+    public void setUp() {
+        first = productService.save(Product.builder().title("first").contents("0").build()).getId();
+        second = productService.save(Product.builder().title("second").contents("0").build()).getId();
+    }
+
+    @After
+    public void tearDown() {
+        productRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void coalescesUpdatesOfTheSameRow() {
+        productRepository.findById(first);
+
+        for(int i = 1; i <= 3; i++) {
+            assertThat(productService.updateContents(first, String.valueOf(i))).isTrue();
+        }
+        productService.updateContents(second, "1");
+
+        assertThat(productRepository.findById(first).get().getContents()).isEqualTo("0");
+        assertThat(productWriteBehindBuffer.flush()).isEqualTo(2);
+        assertThat(productRepository.findById(first).get().getContents()).isEqualTo("3");
+        assertThat(productRepository.findById(second).get().getContents()).isEqualTo("1");
+    }
+
+    @Test
+    public void flushesPendingUpdatesOnShutdown() {
+        productService.updateContents(first, "last");
+
+        productWriteBehindBuffer.destroy();
+
+        assertThat(productWriteBehindBuffer.getPendingCount()).isZero();
+        assertThat(productRepository.findById(first).get().getContents()).isEqualTo("last");
+    }
+}
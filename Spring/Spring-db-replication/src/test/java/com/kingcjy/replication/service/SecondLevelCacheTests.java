@@ -0,0 +1,103 @@
+package com.kingcjy.replication.service;
+
+import com.kingcjy.replication.dto.ProductDto;
+import com.kingcjy.replication.dto.ProductRequestDto;
+import com.kingcjy.replication.entity.Product;
+import com.kingcjy.replication.entity.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("h2")
+public class SecondLevelCacheTests {
+
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Statistics statistics;
+    private Long id;
+
+    @Before
+    public void setUp() {
+        id = productService.save(Product.builder().title("title").contents("contents").build()).getId();
+        entityManagerFactory.getCache().evictAll();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @After
+    public void tearDown() {
+        productRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void findByIdIsServedFromTheCacheAfterTheFirstLoad() {
+        productRepository.findById(id);
+        long statements = statistics.getPrepareStatementCount();
+
+        Product product = productRepository.findById(id).get();
+
+        assertThat(product.getContents()).isEqualTo("contents");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements);
+        assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void writesUpdateTheCachedEntity() {
+        productRepository.findById(id);
+
+        new TransactionTemplate(transactionManager).execute(status -> {
+            productRepository.findById(id).get().setContents("changed");
+            return null;
+        });
+
+        assertThat(productRepository.findById(id).get().getContents()).isEqualTo("changed");
+    }
+
+    @Test
+    public void writesInvalidateCachedQueries() {
+        assertThat(productService.getProducts()).hasSize(1);
+        assertThat(productService.getProducts()).hasSize(1);
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+
+        ProductRequestDto product = new ProductRequestDto();
+        product.setTitle("another");
+        productService.saveAll(Collections.singletonList(product));
+
+        assertThat(productService.getProducts()).extracting(ProductDto::getTitle).containsExactlyInAnyOrder("title", "another");
+    }
+
+    @Test
+    public void hitsArePublishedAsMetrics() {
+        productRepository.findById(id);
+        productRepository.findById(id);
+
+        assertThat(meterRegistry.get("hibernate.second.level.cache.requests")
+                .tag("result", "hit").functionCounter().count()).isEqualTo(1);
+    }
+}